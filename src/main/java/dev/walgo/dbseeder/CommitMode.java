@@ -0,0 +1,34 @@
+package dev.walgo.dbseeder;
+
+/**
+ * When to commit written data.
+ * <p>
+ * For all modes except {@link #NONE} auto-commit of connection is turned off during writing and restored after it.
+ * Uncommitted data is rolled back on error.
+ */
+public enum CommitMode {
+
+    /**
+     * Don't manage transactions, auto-commit of connection is used as is.
+     */
+    NONE,
+
+    /**
+     * Commit after every table.
+     */
+    TABLE,
+
+    /**
+     * Commit after every {@link DBSSettings#commitInterval()} rows and after every table.
+     */
+    ROWS,
+
+    /**
+     * Commit once after all tables.
+     * <p>
+     * Parallel writing commits after every table with a warning, because tables of the next level must see committed
+     * data
+     */
+    RUN
+
+}
@@ -8,6 +8,7 @@ import java.util.Map;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import javax.annotation.Nullable;
+import javax.sql.DataSource;
 import org.apache.commons.lang3.function.TriConsumer;
 import org.immutables.value.Value;
 import org.immutables.value.Value.Style.ImplementationVisibility;
@@ -29,8 +30,30 @@ public abstract class DBSSettings {
 
     public static final String ANY_TABLE = "*";
 
+    /**
+     * Connection for writing.
+     * <p>
+     * Required when {@link #dataSource()} isn't set
+     *
+     * @return connection
+     */
+    @Nullable
     public abstract Connection connection();
 
+    /**
+     * Data source, which connections are leased from for writing.
+     * <p>
+     * Used when {@link #connection()} isn't set, and for workers of parallel writing (see {@link #parallelism()}).
+     * Leased connection is committed after every table when auto-commit is off and returned after writing
+     *
+     * @return data source
+     */
+    @Nullable
+    @Value.Default
+    public DataSource dataSource() {
+        return null;
+    }
+
     public abstract String sourceDir();
 
     /**
@@ -73,6 +96,36 @@ public abstract class DBSSettings {
         return "##";
     }
 
+    /**
+     * Quote of CSV values.
+     * <p>
+     * Delimiters and line breaks inside quoted value belong to the value, doubled quote inside quotes means quote
+     * itself (e.g. <code>"a;""b"""</code> for value <code>a;"b"</code>), and quoted content isn't trimmed. Items of
+     * array values can be quoted separately. Values are never quoted when it's null
+     *
+     * @return quote or null
+     */
+    @Nullable
+    @Value.Default
+    public Character csvQuote() {
+        return null;
+    }
+
+    /**
+     * Size (in bytes) of chunks, which CSV files of source directory are read by.
+     * <p>
+     * File larger than chunk size is memory-mapped and split into chunks by starts of records (with respect to
+     * {@link #csvQuote()}), chunks are parsed in parallel by threads up to number of processors, divided by
+     * {@link #readParallelism()}. Rows keep numbers of their lines in file. Not used for resources of class loader and
+     * with {@link #streamRows()}. Value less than 1 disables reading by chunks
+     *
+     * @return chunk size
+     */
+    @Value.Default
+    public int csvChunkSize() {
+        return 0;
+    }
+
     @Value.Default
     public String externalValueRef() {
         return "@@";
@@ -84,6 +137,287 @@ public abstract class DBSSettings {
         return null;
     }
 
+    /**
+     * Number of rows sent into DB via one JDBC batch.
+     * <p>
+     * Used for inserts and updates. Value less than 2 disables batching, so every row is written by a separate
+     * statement. Inserts aren't batched for tables with <b>onAfterInsert</b> listener, because it requires a result for
+     * every inserted row
+     *
+     * @return batch size
+     */
+    @Value.Default
+    public int batchSize() {
+        return 0;
+    }
+
+    /**
+     * How to check that a row already exists in the table for <b>insert</b> and <b>modify</b> actions.
+     *
+     * @return check method
+     */
+    @Value.Default
+    public ExistenceCheck existenceCheck() {
+        return ExistenceCheck.QUERY;
+    }
+
+    /**
+     * Resolve references via cache instead of subselects.
+     * <p>
+     * Every referenced table is loaded once and keys are bound into SQL as parameters. Values not found in referenced
+     * table are reported as errors for all rows of a table at once, before the table is written. Tables with
+     * <b>onRow</b>, <b>onInsert</b> or <b>onUpdate</b> listeners, which can change row data, aren't checked before
+     * writing, the first missed value fails writing of its row
+     *
+     * @return true if references are resolved via cache
+     */
+    @Value.Default
+    public boolean referenceCache() {
+        return false;
+    }
+
+    /**
+     * Number of prepared statements, cached by writer for reuse.
+     * <p>
+     * Statements are kept open for the whole run, so the server-side prepare of driver can take effect. Value less
+     * than 1 disables cache, so every statement is closed after execution
+     *
+     * @return statement cache size
+     */
+    @Value.Default
+    public int statementCacheSize() {
+        return 0;
+    }
+
+    /**
+     * Use native upsert (e.g. <code>INSERT ... ON CONFLICT</code>) for <b>modify</b> action instead of existence check
+     * with following insert or update.
+     * <p>
+     * Used only when DB supports upsert, keys of source match a primary key or unique index of table, and source hasn't
+     * extra condition, ignored omits or <b>onInsert</b>, <b>onUpdate</b>, <b>onAfterInsert</b> listeners. Upsert
+     * doesn't report whether row was inserted or updated, so all upserted rows are counted as updated
+     *
+     * @return true if native upsert is used
+     */
+    @Value.Default
+    public boolean nativeUpsert() {
+        return false;
+    }
+
+    /**
+     * Load rows of <b>ignore_not_empty</b> action into empty table via DB bulk load (e.g. <code>COPY</code> for
+     * PostgreSQL) instead of insert for every row.
+     * <p>
+     * Used only when DB supports bulk load. Tables with self-references, ignored omits or <b>onRow</b>,
+     * <b>onInsert</b>, <b>onAfterInsert</b> listeners are written by inserts. Rows starting from the first row with
+     * direct or streamed values are written by inserts too
+     *
+     * @return true if bulk load is used
+     */
+    @Value.Default
+    public boolean bulkLoad() {
+        return false;
+    }
+
+    /**
+     * Max total size (in bytes) of external values (<b>@@</b>file), cached during the run.
+     * <p>
+     * Cached values are evicted in LRU order. Files referenced by rows of a table are prefetched in background before
+     * the table is written, unless rows are streamed (see {@link #streamRows()}). Value less than 1 disables cache, so
+     * file is read for every reference
+     *
+     * @return cache size
+     */
+    @Value.Default
+    public long externalCacheSize() {
+        return 0;
+    }
+
+    /**
+     * Pass external values (<b>@@</b>file) of character and binary columns to driver as streams, instead of reading
+     * them into memory.
+     * <p>
+     * Content of file is written into binary column as is. Streams of batched rows are kept open until the batch is
+     * executed, so batch is executed when it has 100 streamed values, even if it's smaller than {@link #batchSize()}.
+     * Tables with streamed values aren't written by bulk load, and streamed values are always treated as changed by
+     * {@link #skipUnchanged()}
+     *
+     * @return true if external values are streamed
+     */
+    @Value.Default
+    public boolean streamExternalValues() {
+        return false;
+    }
+
+    /**
+     * Read rows of sources on demand while they are written, instead of keeping rows of all sources in memory.
+     * <p>
+     * Only headers of sources are read by {@link dev.walgo.dbseeder.DBSeeder#read()}, rows are read again from the
+     * resource every time writer iterates them. Readers without streaming support (e.g. JSON) read rows into memory
+     *
+     * @return true if rows are streamed
+     */
+    @Value.Default
+    public boolean streamRows() {
+        return false;
+    }
+
+    /**
+     * Capacity of queues between stages of pipelined writing.
+     * <p>
+     * Rows of a table are read and their values are converted to DB types (including reading of external values) by
+     * background threads, while writer executes statements for previous rows. Every stage waits when the queue to the
+     * next stage is full. Rows are written in order of source. Value less than 1 disables pipeline, so rows are read,
+     * converted and written one by one
+     *
+     * @return queue capacity
+     */
+    @Value.Default
+    public int pipelineCapacity() {
+        return 0;
+    }
+
+    /**
+     * Checkpoint table with content hashes of written resources.
+     * <p>
+     * When set, the table is created if it doesn't exist, and hash of every resource is saved into it after successful
+     * writing. With {@link CommitMode#RUN} hash is saved in the same transaction as resource data. With
+     * {@link CommitMode#TABLE} and {@link CommitMode#ROWS} (and in parallel writing) data is committed by writer, and
+     * hash is saved in a separate transaction after it: when saving fails, written data is kept and the resource is
+     * written again by the next run. Resources with the same hash as saved one are skipped by reading and writing.
+     * Resources with external values are always written. Changes of listeners and of seed data made by code after
+     * reading aren't detected
+     *
+     * @return table name or null if resources are always written
+     */
+    @Nullable
+    @Value.Default
+    public String stateTable() {
+        return null;
+    }
+
+    /**
+     * Load metadata of tables of sources and referenced tables only, instead of introspection of the whole schema.
+     * <p>
+     * Every table is looked up by its name. When {@link #dataSource()} is set, tables are loaded concurrently by
+     * {@link #parallelism()} connections
+     *
+     * @return true if only required tables are loaded
+     */
+    @Value.Default
+    public boolean targetedMetadata() {
+        return false;
+    }
+
+    /**
+     * File with snapshot of table metadata, which is reused by next runs instead of metadata introspection.
+     * <p>
+     * Snapshot is valid while schema fingerprint (see {@link #metadataFingerprint()}) isn't changed and snapshot
+     * contains metadata of all tables of sources. Otherwise metadata is loaded from DB and snapshot is rewritten
+     *
+     * @return file path or null if metadata is always loaded from DB
+     */
+    @Nullable
+    @Value.Default
+    public String metadataSnapshot() {
+        return null;
+    }
+
+    /**
+     * Query for schema fingerprint, which validates {@link #metadataSnapshot()}, e.g.
+     * <code>SELECT MAX(installed_rank) FROM flyway_schema_history</code>.
+     * <p>
+     * All values of result rows are hashed. When not set, checksum of columns and primary keys from
+     * <code>INFORMATION_SCHEMA</code> is used
+     *
+     * @return SQL or null for default fingerprint
+     */
+    @Nullable
+    @Value.Default
+    public String metadataFingerprint() {
+        return null;
+    }
+
+    /**
+     * Skip updates of rows, which aren't changed by source, for <b>modify</b> action.
+     * <p>
+     * Current values of all table rows are loaded via single query before writing and compared with converted source
+     * values. Unchanged rows aren't updated, changed rows are updated by columns with changed values only. Values,
+     * which are changed by DB on write (e.g. rounded to column scale), are always treated as changed. Native upsert
+     * isn't used with this setting. Loaded rows are kept in memory, their number is limited by
+     * {@link #skipUnchangedLimit()}
+     *
+     * @return true if unchanged rows are skipped
+     */
+    @Value.Default
+    public boolean skipUnchanged() {
+        return false;
+    }
+
+    /**
+     * Max number of table rows loaded into memory by {@link #skipUnchanged()}.
+     * <p>
+     * Rows above the limit aren't loaded, source rows with their keys are updated by all columns, as without
+     * {@link #skipUnchanged()}. Value less than 1 removes the limit
+     *
+     * @return number of rows
+     */
+    @Value.Default
+    public int skipUnchangedLimit() {
+        return 1_000_000;
+    }
+
+    /**
+     * Max number of tables written concurrently.
+     * <p>
+     * Tables are written by levels of reference graph: a table is written after all tables it references (and all
+     * earlier sources of the same table) are written and committed. Every table of a level is written by its own
+     * connection, so parallel writing requires {@link #dataSource()} (see also {@link DBSeeder#openConnection()}),
+     * otherwise tables are written one by one. Listeners are called from worker threads. Value less than 2 disables
+     * parallel writing
+     *
+     * @return number of concurrently written tables
+     */
+    @Value.Default
+    public int parallelism() {
+        return 1;
+    }
+
+    /**
+     * Max number of resources read concurrently by {@link DBSeeder#read()}.
+     * <p>
+     * Read sources are collected in order of resource names, as without concurrent reading. Value less than 2
+     * disables concurrent reading
+     *
+     * @return number of concurrently read resources
+     */
+    @Value.Default
+    public int readParallelism() {
+        return 1;
+    }
+
+    /**
+     * When to commit written data.
+     *
+     * @return commit mode
+     */
+    @Value.Default
+    public CommitMode commitMode() {
+        return CommitMode.NONE;
+    }
+
+    /**
+     * Number of rows written between commits for {@link CommitMode#ROWS} mode.
+     * <p>
+     * Value less than 1 commits after every table only
+     *
+     * @return number of rows
+     */
+    @Value.Default
+    public int commitInterval() {
+        return 10_000;
+    }
+
     public abstract Map<String, Consumer<SeedInfo>> onStartData();
 
     /**
@@ -112,6 +446,13 @@ public abstract class DBSSettings {
      **/
     public abstract Map<String, TriConsumer<SeedInfo, DataRow, Map<String, Object>>> onAfterInsert();
 
+    @Value.Check
+    protected void check() {
+        if ((connection() == null) && (dataSource() == null)) {
+            throw new IllegalStateException("Connection or data source is required");
+        }
+    }
+
     public static class Builder extends DBSSettingsBuilder {
     }
 
@@ -5,18 +5,35 @@ import dev.walgo.dbseeder.reader.IReader;
 import dev.walgo.dbseeder.reader.ReaderFactory;
 import dev.walgo.dbseeder.writer.DBWriter;
 import dev.walgo.dbseeder.writer.IWriter;
+import dev.walgo.dbseeder.writer.SeedSession;
 import dev.walgo.walib.ResourceLoader;
 import dev.walgo.walib.ResourceUtils;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.function.IOSupplier;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
@@ -31,10 +48,18 @@ public class DBSeeder {
 
     final List<SeedInfo> infos = new ArrayList<>();
 
+    /**
+     * Resources, which are skipped as unchanged since the last writing.
+     */
+    final List<SeedInfo> unchanged = new ArrayList<>();
+
     private final DBSSettings settings;
+    private final SeedState state;
+    private final Map<SeedInfo, String> hashes = new IdentityHashMap<>();
 
     public DBSeeder(DBSSettings settings) {
         this.settings = settings;
+        this.state = settings.stateTable() != null ? new SeedState(settings) : null;
     }
 
     public List<SeedInfo> getInfos() {
@@ -45,6 +70,10 @@ public class DBSeeder {
         return settings;
     }
 
+    public List<SeedInfo> getUnchanged() {
+        return unchanged;
+    }
+
     /**
      * Read seeder data from file.
      *
@@ -52,8 +81,25 @@ public class DBSeeder {
      * @return seed data
      */
     public SeedInfo read(String fileName) {
-        try (InputStream stream = Files.newInputStream(new File(fileName).toPath())) {
-            return read(fileName, stream);
+        return read(fileName, new File(fileName).toPath());
+    }
+
+    /**
+     * Read seeder data from file system.
+     * <p>
+     * Large CSV file can be read by chunks in parallel (see {@link DBSSettings#csvChunkSize()}).
+     *
+     * @param fileName seed file name
+     * @param file     seed file
+     * @return seed data
+     */
+    public SeedInfo read(String fileName, Path file) {
+        IReader reader = ReaderFactory.getReader(settings, fileName);
+        LOG.debug("Use reader [{}] for file [{}]", reader.getClass().getSimpleName(), fileName);
+        try {
+            SeedInfo info = reader.read(fileName, file);
+            info.setResourceName(fileName);
+            return info;
         } catch (IOException ex) {
             throw new RuntimeException(ex);
         }
@@ -71,6 +117,26 @@ public class DBSeeder {
         }
     }
 
+    /**
+     * Read header of seeder data, rows are read from resource while they are written.
+     *
+     * @param fileName seed file name
+     * @param opener   opener of new stream for resource
+     * @return seed data
+     * @see DBSSettings#streamRows()
+     */
+    public SeedInfo stream(String fileName, IOSupplier<InputStream> opener) {
+        IReader reader = ReaderFactory.getReader(settings, fileName);
+        LOG.debug("Use reader [{}] for file [{}]", reader.getClass().getSimpleName(), fileName);
+        try {
+            SeedInfo info = reader.stream(fileName, opener);
+            info.setResourceName(fileName);
+            return info;
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     /**
      * Read all source data from directory.
      *
@@ -105,18 +171,128 @@ public class DBSeeder {
                     .toList();
         }
         ClassLoader classLoader = settings.classLoader() != null ? settings.classLoader() : getClass().getClassLoader();
+        if (state != null) {
+            loadState();
+        }
+        List<Supplier<Resource>> tasks = new ArrayList<>(files.size());
         for (String file : files) {
-            LOG.info("Read resource [{}]", file);
             String[] nameParts = StringUtils.split(file, File.separatorChar);
             String fileName = nameParts[nameParts.length - 1];
-            try (InputStream stream = isExternalResource
-                    ? Files.newInputStream(Path.of(srcDir + file))
-                    : classLoader.getResourceAsStream(file)) {
-                SeedInfo info = read(fileName, stream);
-                infos.add(info);
-            } catch (IOException ex) {
-                throw new RuntimeException(ex);
+            IOSupplier<InputStream> opener = isExternalResource
+                    ? () -> Files.newInputStream(Path.of(srcDir + file))
+                    : () -> classLoader.getResourceAsStream(file);
+            Path path = isExternalResource ? Path.of(srcDir + file) : null;
+            tasks.add(() -> readResource(file, fileName, path, opener));
+        }
+        for (Resource resource : readAll(tasks)) {
+            if (resource.unchanged() != null) {
+                unchanged.add(resource.unchanged());
+                continue;
+            }
+            if (resource.hash() != null) {
+                hashes.put(resource.info(), resource.hash());
             }
+            infos.add(resource.info());
+        }
+    }
+
+    /**
+     * Result of resource reading.
+     *
+     * @param info      source data or null if resource is unchanged
+     * @param unchanged saved info of unchanged resource
+     * @param hash      resource hash
+     */
+    private record Resource(SeedInfo info, SeedInfo unchanged, String hash) {
+    }
+
+    /**
+     * Read resources, concurrently when {@link DBSSettings#readParallelism()} is set.
+     *
+     * @param tasks readers of resources
+     * @return results in order of tasks
+     */
+    private List<Resource> readAll(List<Supplier<Resource>> tasks) {
+        int threads = Math.min(settings.readParallelism(), tasks.size());
+        if (threads < 2) {
+            return tasks.stream().map(Supplier::get).toList();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Resource>> futures = new ArrayList<>(tasks.size());
+            for (Supplier<Resource> task : tasks) {
+                futures.add(executor.submit(task::get));
+            }
+            List<Resource> result = new ArrayList<>(tasks.size());
+            for (Future<Resource> future : futures) {
+                result.add(future.get());
+            }
+            return result;
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtimeEx) {
+                throw runtimeEx;
+            }
+            throw new RuntimeException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private Resource readResource(String file, String fileName, Path path, IOSupplier<InputStream> opener) {
+        LOG.info("Read resource [{}]", file);
+        try {
+            String hash = null;
+            byte[] content = null;
+            if (state != null) {
+                try (InputStream stream = opener.get()) {
+                    if (settings.streamRows() || (path != null)) {
+                        hash = state.hash(stream);
+                    } else {
+                        content = stream.readAllBytes();
+                        hash = state.hash(content);
+                    }
+                }
+                SeedInfo saved = state.unchanged(fileName, hash);
+                if (saved != null) {
+                    LOG.info("Resource [{}] is unchanged since the last writing, skipped", file);
+                    return new Resource(null, saved, hash);
+                }
+            }
+            if (settings.streamRows()) {
+                return new Resource(stream(fileName, opener), null, hash);
+            }
+            if (content != null) {
+                return new Resource(read(fileName, new ByteArrayInputStream(content)), null, hash);
+            }
+            if (path != null) {
+                return new Resource(read(fileName, path), null, hash);
+            }
+            try (InputStream stream = opener.get()) {
+                return new Resource(read(fileName, stream), null, hash);
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void loadState() {
+        if (settings.connection() != null) {
+            state.load(settings.connection());
+            return;
+        }
+        Connection connection = openConnection();
+        try {
+            state.load(connection);
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            DbUtils.closeQuietly(connection);
         }
     }
 
@@ -128,13 +304,56 @@ public class DBSeeder {
      * @return number of inserted/updated records
      */
     public Pair<Integer, Integer> write(SeedInfo info, Class<? extends DBWriter> writerClass) {
+        if (settings.connection() == null) {
+            Connection connection = openConnection();
+            try {
+                return writeIsolated(writerClass, null, List.of(info), connection, true);
+            } finally {
+                DbUtils.closeQuietly(connection);
+            }
+        }
+        return inTransaction(settings.connection(), false, () -> {
+            try (SeedSession session = newSession(settings);
+                    IWriter writer = newWriter(writerClass, session, settings)) {
+                if (writer == null) {
+                    return Pair.of(0, 0);
+                }
+                return write(writer, info, writerClass, settings.connection());
+            }
+        });
+    }
+
+    /**
+     * Create session of run.
+     *
+     * @param sessionSettings settings with connection for loading of metadata
+     * @return session
+     */
+    private SeedSession newSession(DBSSettings sessionSettings) {
+        // unchanged resources are required for references to their tables
+        List<SeedInfo> sources = infos;
+        if (!unchanged.isEmpty()) {
+            sources = new ArrayList<>(infos);
+            sources.addAll(unchanged);
+        }
+        return new SeedSession(sources, sessionSettings);
+    }
+
+    private IWriter newWriter(Class<? extends DBWriter> writerClass, SeedSession session,
+            DBSSettings writerSettings) {
         try {
-            IWriter writer = writerClass.getConstructor(List.class, DBSSettings.class).newInstance(infos, settings);
-            return writer.write(info);
+            try {
+                return writerClass.getConstructor(SeedSession.class, DBSSettings.class)
+                        .newInstance(session, writerSettings);
+            } catch (NoSuchMethodException ex) {
+                // writer without session support
+                return writerClass.getConstructor(List.class, DBSSettings.class)
+                        .newInstance(session.getInfos(), writerSettings);
+            }
         } catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException
                 | InvocationTargetException ex) {
             LOG.error("Error on write", ex);
-            return Pair.of(0, 0);
+            return null;
         }
     }
 
@@ -149,17 +368,263 @@ public class DBSeeder {
 
     /**
      * Write all data into database.
+     * <p>
+     * The same writer is used for all resources, so it can reuse cached data between tables. Metadata, dialect and
+     * compiled statements are shared by all writers of the run via {@link SeedSession}. When settings have no
+     * connection, the writer uses a connection leased from {@link DBSSettings#dataSource()} for the whole run. When
+     * {@link DBSSettings#parallelism()} is set and connections for workers are available, independent tables are
+     * written concurrently by their own writers (see {@link #levels(List)}). Data is committed according to
+     * {@link DBSSettings#commitMode()}
      *
      * @param writerClass class for write data into DB
      */
     public void write(Class<? extends DBWriter> writerClass) {
-        for (SeedInfo info : infos) {
-            LOG.info("Write table [{}] from resource [{}] via [{}]", info.getTableName(), info.getResourceName(),
-                    writerClass.getSimpleName());
-            Pair<Integer, Integer> result = write(info, writerClass);
-            LOG.info("{} -> inserted: {}, updated: {}",
-                    info.getTableName(), result.getLeft(), result.getRight());
+        if (settings.parallelism() > 1) {
+            Connection connection = openConnection();
+            if (connection != null) {
+                writeParallel(writerClass, connection);
+                return;
+            }
+            LOG.warn("No connections for parallel writing, tables are written one by one");
+        }
+        if (settings.connection() == null) {
+            Connection connection = openConnection();
+            try {
+                writeIsolated(writerClass, null, infos, connection, settings.commitMode() != CommitMode.RUN);
+            } finally {
+                DbUtils.closeQuietly(connection);
+            }
+            return;
+        }
+        inTransaction(settings.connection(), false, () -> {
+            try (SeedSession session = newSession(settings);
+                    IWriter writer = newWriter(writerClass, session, settings)) {
+                if (writer != null) {
+                    for (SeedInfo info : infos) {
+                        write(writer, info, writerClass, settings.connection());
+                    }
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Run writing in transaction according to {@link DBSSettings#commitMode()}.
+     * <p>
+     * Data is committed after writing and rolled back on error when connection isn't in auto-commit mode. Auto-commit
+     * is turned off for all modes except {@link CommitMode#NONE} and restored after writing. Connection from settings
+     * isn't touched for {@link CommitMode#NONE}
+     *
+     * @param connection connection for writing
+     * @param leased     is connection leased by seeder
+     * @param action     writing
+     * @return result of writing
+     */
+    private <T> T inTransaction(Connection connection, boolean leased, Supplier<T> action) {
+        if (!leased && (settings.commitMode() == CommitMode.NONE)) {
+            return action.get();
+        }
+        try {
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit && (settings.commitMode() != CommitMode.NONE)) {
+                connection.setAutoCommit(false);
+            }
+            try {
+                T result = action.get();
+                if (!connection.getAutoCommit()) {
+                    connection.commit();
+                }
+                return result;
+            } catch (RuntimeException ex) {
+                try {
+                    if (!connection.getAutoCommit()) {
+                        connection.rollback();
+                    }
+                } catch (SQLException rollbackEx) {
+                    ex.addSuppressed(rollbackEx);
+                }
+                throw ex;
+            } finally {
+                if (connection.getAutoCommit() != autoCommit) {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private Pair<Integer, Integer> write(IWriter writer, SeedInfo info, Class<? extends DBWriter> writerClass,
+            Connection connection) {
+        LOG.info("Write table [{}] from resource [{}] via [{}]", info.getTableName(), info.getResourceName(),
+                writerClass.getSimpleName());
+        Pair<Integer, Integer> result = writer.write(info);
+        LOG.info("{} -> inserted: {}, updated: {}",
+                info.getTableName(), result.getLeft(), result.getRight());
+        String hash = hashes.get(info);
+        // with TABLE and ROWS modes data is committed by writer already, so hash is never saved for lost data
+        if ((state != null) && (hash != null)) {
+            state.save(connection, info, hash);
+        }
+        return result;
+    }
+
+    /**
+     * Open a new connection for writing, e.g. for a worker of parallel writing.
+     * <p>
+     * Connection is used for writing of whole tables and committed after every table when auto-commit is off. Default
+     * implementation leases connection from {@link DBSSettings#dataSource()}
+     *
+     * @return new connection or null if there is no data source
+     */
+    protected Connection openConnection() {
+        if (settings.dataSource() == null) {
+            return null;
+        }
+        try {
+            return settings.dataSource().getConnection();
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private void writeParallel(Class<? extends DBWriter> writerClass, Connection firstConnection) {
+        if (settings.commitMode() == CommitMode.RUN) {
+            LOG.warn("Commit mode [{}] isn't supported by parallel writing, data is committed after every table",
+                    settings.commitMode());
+        }
+        Queue<Connection> connections = new ConcurrentLinkedQueue<>();
+        List<Connection> opened = Collections.synchronizedList(new ArrayList<>());
+        connections.add(firstConnection);
+        opened.add(firstConnection);
+        ExecutorService executor = Executors.newFixedThreadPool(settings.parallelism());
+        try (SeedSession session = newSession(
+                new DBSSettings.Builder().from(settings).connection(firstConnection).build())) {
+            // load metadata once before workers use it
+            session.getTables();
+            for (List<SeedInfo> level : levels(infos)) {
+                List<Future<?>> futures = new ArrayList<>(level.size());
+                for (SeedInfo info : level) {
+                    futures.add(executor.submit(() -> {
+                        Connection connection = connections.poll();
+                        if (connection == null) {
+                            connection = openConnection();
+                            if (connection == null) {
+                                throw new IllegalStateException("No connection for parallel writing");
+                            }
+                            opened.add(connection);
+                        }
+                        writeIsolated(writerClass, session, List.of(info), connection, true);
+                        connections.add(connection);
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException ex) {
+                        futures.forEach(it -> it.cancel(true));
+                        throw ex.getCause() instanceof RuntimeException runtimeEx
+                                ? runtimeEx
+                                : new RuntimeException(ex.getCause());
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        futures.forEach(it -> it.cancel(true));
+                        throw new RuntimeException(ex);
+                    }
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        } finally {
+            executor.shutdownNow();
+            // connections are closed only when workers don't use them anymore
+            awaitTermination(executor);
+            opened.forEach(DbUtils::closeQuietly);
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.warn("Waiting for workers of parallel writing");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Write sources by own writer via leased connection.
+     *
+     * @param session      session of run or null to create it for connection
+     * @param commitTables commit after every source
+     * @return number of inserted/updated records of the last source
+     */
+    private Pair<Integer, Integer> writeIsolated(Class<? extends DBWriter> writerClass, SeedSession session,
+            List<SeedInfo> sources, Connection connection, boolean commitTables) {
+        DBSSettings writerSettings = new DBSSettings.Builder().from(settings).connection(connection).build();
+        return inTransaction(connection, true, () -> {
+            Pair<Integer, Integer> result = Pair.of(0, 0);
+            SeedSession ownSession = session == null ? newSession(writerSettings) : null;
+            try (IWriter writer = newWriter(writerClass, session != null ? session : ownSession, writerSettings)) {
+                if (writer == null) {
+                    return result;
+                }
+                for (SeedInfo info : sources) {
+                    result = write(writer, info, writerClass, connection);
+                    if (commitTables && !connection.getAutoCommit()) {
+                        connection.commit();
+                    }
+                }
+                return result;
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            } finally {
+                if (ownSession != null) {
+                    ownSession.close();
+                }
+            }
+        });
+    }
+
+    /**
+     * Split sources into levels, which can be written concurrently.
+     * <p>
+     * Source depends on every earlier source, which writes the same table, a table it references or a table, which
+     * references its table. So the result of writing is the same as for writing in order of sources.
+     *
+     * @param sources sources in order of writing
+     * @return levels in order of writing
+     */
+    static List<List<SeedInfo>> levels(List<SeedInfo> sources) {
+        List<List<SeedInfo>> result = new ArrayList<>();
+        int[] sourceLevels = new int[sources.size()];
+        for (int i = 0; i < sources.size(); i++) {
+            SeedInfo info = sources.get(i);
+            int level = 0;
+            for (int j = 0; j < i; j++) {
+                if (isDependent(info, sources.get(j))) {
+                    level = Math.max(level, sourceLevels[j] + 1);
+                }
+            }
+            sourceLevels[i] = level;
+            if (result.size() <= level) {
+                result.add(new ArrayList<>());
+            }
+            result.get(level).add(info);
         }
+        return result;
+    }
+
+    private static boolean isDependent(SeedInfo info, SeedInfo earlier) {
+        return info.getTableName().equalsIgnoreCase(earlier.getTableName())
+                || references(info, earlier.getTableName())
+                || references(earlier, info.getTableName());
+    }
+
+    private static boolean references(SeedInfo info, String tableName) {
+        return info.getReferences().values().stream().anyMatch(it -> it.getTableName().equalsIgnoreCase(tableName));
     }
 
 }
@@ -0,0 +1,20 @@
+package dev.walgo.dbseeder;
+
+/**
+ * How to check that a row with the same keys already exists in the table.
+ */
+public enum ExistenceCheck {
+
+    /**
+     * Query table via <code>SELECT COUNT(*)</code> for every row.
+     */
+    QUERY,
+
+    /**
+     * Load keys of all table rows via single query before writing and check rows in memory.
+     * <p>
+     * Rows with direct values (<b>!!</b>) in key columns are checked via query
+     */
+    PREFETCH
+
+}
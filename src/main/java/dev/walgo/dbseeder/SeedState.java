@@ -0,0 +1,189 @@
+package dev.walgo.dbseeder;
+
+import dev.walgo.dbseeder.data.ActionType;
+import dev.walgo.dbseeder.data.SeedInfo;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+import org.apache.commons.dbutils.QueryRunner;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Checkpoint table with content hashes of successfully written resources.
+ * <p>
+ * Hash covers resource content and settings, which affect reading and writing of resource. Resource is unchanged when
+ * its hash is the same as the hash saved after its last writing. Table, action and condition of resource are saved
+ * too, so references to unchanged resources are resolved as before.
+ */
+class SeedState {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SeedState.class);
+    private static final QueryRunner SQL = new QueryRunner();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final DBSSettings settings;
+    private final Map<String, SeedInfo> written = new HashMap<>();
+    private final Map<String, String> hashes = new HashMap<>();
+
+    SeedState(DBSSettings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * Create checkpoint table if it doesn't exist and load saved hashes.
+     *
+     * @param connection DB connection
+     */
+    void load(Connection connection) {
+        String table = settings.stateTable();
+        try {
+            SQL.update(connection, """
+                    CREATE TABLE IF NOT EXISTS %s (
+                        resource_name VARCHAR(1000) NOT NULL PRIMARY KEY,
+                        content_hash VARCHAR(64) NOT NULL,
+                        table_name VARCHAR(1000) NOT NULL,
+                        action VARCHAR(32) NOT NULL,
+                        extra_condition VARCHAR(4000),
+                        updated_at TIMESTAMP NOT NULL
+                    )""".formatted(table));
+            hashes.clear();
+            written.clear();
+            SQL.query(connection,
+                    "SELECT resource_name, content_hash, table_name, action, extra_condition FROM " + table,
+                    rs -> {
+                        while (rs.next()) {
+                            SeedInfo info = new SeedInfo();
+                            info.setResourceName(rs.getString(1));
+                            info.setTableName(rs.getString(3));
+                            info.setAction(ActionType.valueOf(rs.getString(4)));
+                            info.setExtraCondition(rs.getString(5));
+                            hashes.put(info.getResourceName(), rs.getString(2));
+                            written.put(info.getResourceName(), info);
+                        }
+                        return null;
+                    });
+            LOG.debug("Loaded [{}] resource hashes from [{}]", hashes.size(), table);
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Hash of resource content and settings.
+     * <p>
+     * Resources with external values are never treated as unchanged, because external files aren't hashed, so null is
+     * returned for them.
+     *
+     * @param content resource content
+     * @return hash or null if resource must be always written
+     */
+    String hash(byte[] content) {
+        try {
+            return hash(new ByteArrayInputStream(content));
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Hash of resource content and settings, content is read by chunks.
+     *
+     * @param input resource content
+     * @return hash or null if resource must be always written
+     * @throws IOException on read error
+     * @see #hash(byte[])
+     */
+    String hash(InputStream input) throws IOException {
+        byte[] ref = settings.externalValueRef().getBytes(StandardCharsets.UTF_8);
+        if (ref.length == 0) {
+            return null;
+        }
+        String fingerprint = String.join("\n", settings.dbSchema(), String.valueOf(settings.sourceType()),
+                String.valueOf(settings.csvDelimiter()), String.valueOf(settings.csvArrayDelimiter()),
+                settings.csvComment(), settings.csvMultiRefDelimiter(), String.valueOf(settings.csvQuote()),
+                settings.externalValueRef(),
+                String.valueOf(settings.referenceCache()), String.valueOf(settings.skipUnchanged()));
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+        digest.update(fingerprint.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+        // chunk starts with the tail of previous one, so reference split by chunks is found too
+        byte[] buffer = new byte[BUFFER_SIZE + ref.length];
+        int tail = 0;
+        int read;
+        while ((read = input.read(buffer, tail, BUFFER_SIZE)) != -1) {
+            digest.update(buffer, tail, read);
+            int length = tail + read;
+            if (indexOf(buffer, length, ref) >= 0) {
+                return null;
+            }
+            tail = Math.min(ref.length - 1, length);
+            System.arraycopy(buffer, length - tail, buffer, 0, tail);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static int indexOf(byte[] buffer, int length, byte[] pattern) {
+        outer:
+        for (int i = 0; i <= length - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (buffer[i + j] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Resource, which wasn't changed since the last writing.
+     *
+     * @param resourceName resource name
+     * @param hash         current hash of resource
+     * @return saved info of resource (without data) or null if resource is changed
+     */
+    SeedInfo unchanged(String resourceName, String hash) {
+        if ((hash == null) || !hash.equals(hashes.get(resourceName))) {
+            return null;
+        }
+        return written.get(resourceName);
+    }
+
+    /**
+     * Save hash of successfully written resource.
+     *
+     * @param connection DB connection, which resource data was written by
+     * @param info       resource
+     * @param hash       resource hash
+     */
+    void save(Connection connection, SeedInfo info, String hash) {
+        String table = settings.stateTable();
+        try {
+            SQL.update(connection, "DELETE FROM %s WHERE resource_name = ?".formatted(table),
+                    info.getResourceName());
+            SQL.update(connection, """
+                    INSERT INTO %s (resource_name, content_hash, table_name, action, extra_condition, updated_at)
+                    VALUES (?, ?, ?, ?, ?, ?)""".formatted(table),
+                    info.getResourceName(), hash, info.getTableName(), info.getAction().name(),
+                    info.getExtraCondition(), new Timestamp(System.currentTimeMillis()));
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package dev.walgo.dbseeder.data;
+
+import java.util.Iterator;
+
+/**
+ * Rows of source opened for one iteration.
+ * <p>
+ * Cursor can be iterated only once and must be closed after use, even when not all rows are read.
+ */
+public interface RowCursor extends Iterable<DataRow>, AutoCloseable {
+
+    @Override
+    void close();
+
+    /**
+     * Cursor over rows in memory.
+     *
+     * @param rows rows
+     * @return cursor, which doesn't hold resources
+     */
+    static RowCursor of(Iterable<DataRow> rows) {
+        return new RowCursor() {
+            @Override
+            public Iterator<DataRow> iterator() {
+                return rows.iterator();
+            }
+
+            @Override
+            public void close() {
+                // nothing to release
+            }
+        };
+    }
+
+}
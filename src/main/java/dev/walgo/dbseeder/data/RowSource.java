@@ -0,0 +1,19 @@
+package dev.walgo.dbseeder.data;
+
+/**
+ * Source of rows, which are read on demand instead of being kept in memory.
+ * <p>
+ * Source can be opened more than once: writer reads rows of a table a few times (e.g. for checking of references
+ * before writing), and every cursor reads rows from the beginning.
+ */
+@FunctionalInterface
+public interface RowSource {
+
+    /**
+     * Open rows for reading from the beginning.
+     *
+     * @return cursor over rows
+     */
+    RowCursor open();
+
+}
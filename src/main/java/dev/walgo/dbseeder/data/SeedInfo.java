@@ -22,6 +22,7 @@ public class SeedInfo {
     private final Map<String, Integer> keys;
     private final Map<String, ReferenceInfo> references;
     private final List<DataRow> data;
+    private RowSource rowSource;
     private List<String> tableKeys;
 
     public SeedInfo() {
@@ -72,6 +73,28 @@ public class SeedInfo {
         return data;
     }
 
+    public RowSource getRowSource() {
+        return rowSource;
+    }
+
+    /**
+     * Set source of rows, which are read on demand instead of {@link #getData()}.
+     *
+     * @param rowSource source of rows or null to use {@link #getData()}
+     */
+    public void setRowSource(RowSource rowSource) {
+        this.rowSource = rowSource;
+    }
+
+    /**
+     * Open rows of source: rows of {@link #getRowSource()} when it's set, otherwise rows of {@link #getData()}.
+     *
+     * @return cursor over rows, which must be closed after use
+     */
+    public RowCursor openRows() {
+        return rowSource != null ? rowSource.open() : RowCursor.of(data);
+    }
+
     public DataRow getDataRow(int idx) {
         return data.get(idx);
     }
@@ -2,6 +2,10 @@ package dev.walgo.dbseeder.db;
 
 import io.agroal.pool.wrapper.ConnectionWrapper;
 import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Database custom parameters
@@ -43,4 +47,102 @@ public abstract class Database {
 
     public abstract Object valueFromString(String typeName, String stringValue);
 
+    /**
+     * Is native upsert (insert or update row by single statement) supported?
+     * 
+     * @return true if supported
+     */
+    public boolean hasUpsert() {
+        return false;
+    }
+
+    /**
+     * Make native upsert statement.
+     * 
+     * @param table  table name
+     * @param values value expressions by column names
+     * @param keys   key columns, which are matched to unique constraint of table
+     * @return upsert statement
+     */
+    public Upsert upsert(String table, Map<String, String> values, Collection<String> keys) {
+        throw new UnsupportedOperationException(
+                "Upsert isn't supported by [%s]".formatted(getClass().getSimpleName()));
+    }
+
+    /**
+     * Make SQL for create session temporary table from query.
+     * 
+     * @param name     table name
+     * @param query    query, which defines table columns (and data)
+     * @param withData fill table by query data
+     * @return SQL
+     */
+    public String createTempTable(String name, String query, boolean withData) {
+        return "CREATE LOCAL TEMPORARY TABLE %s AS (%s) WITH %sDATA".formatted(name, query, withData ? "" : "NO ");
+    }
+
+    /**
+     * Make SQL for drop session temporary table.
+     * 
+     * @param name table name
+     * @return SQL
+     */
+    public String dropTempTable(String name) {
+        return "DROP TABLE " + name;
+    }
+
+    /**
+     * Make query for cheap fingerprint of schema, which is changed by every change of table columns or primary keys.
+     * <p>
+     * All parameters of query are bound to schema name. All values of result rows are hashed, order of rows doesn't
+     * matter. Default implementation uses <code>INFORMATION_SCHEMA</code>
+     * 
+     * @return SQL
+     */
+    public String schemaFingerprintQuery() {
+        return """
+                SELECT c.table_name, c.column_name, c.data_type, c.ordinal_position, c.is_nullable,
+                    c.character_maximum_length, c.numeric_precision, c.numeric_scale
+                FROM information_schema.columns c
+                WHERE UPPER(c.table_schema) = UPPER(?)
+                UNION ALL
+                SELECT k.table_name, k.column_name, 'PRIMARY KEY', k.ordinal_position, NULL, NULL, NULL, NULL
+                FROM information_schema.table_constraints t
+                JOIN information_schema.key_column_usage k ON k.constraint_schema = t.constraint_schema
+                    AND k.constraint_name = t.constraint_name AND k.table_name = t.table_name
+                WHERE t.constraint_type = 'PRIMARY KEY' AND UPPER(t.table_schema) = UPPER(?)""";
+    }
+
+    /**
+     * Is <code>UPDATE ... FROM</code> supported?
+     * 
+     * @return true if supported
+     */
+    public boolean hasUpdateFrom() {
+        return false;
+    }
+
+    /**
+     * Is bulk load of rows (without statement per row) supported?
+     * 
+     * @return true if supported
+     */
+    public boolean hasBulkLoad() {
+        return false;
+    }
+
+    /**
+     * Load rows into table via bulk load.
+     * 
+     * @param table   table name
+     * @param columns column names
+     * @param rows    rows with values, converted to column types, in order of columns
+     * @return number of loaded rows
+     * @throws SQLException on load error
+     */
+    public long bulkLoad(String table, List<String> columns, Iterable<Object[]> rows) throws SQLException {
+        throw new UnsupportedOperationException(
+                "Bulk load isn't supported by [%s]".formatted(getClass().getSimpleName()));
+    }
+
 }
@@ -0,0 +1,67 @@
+package dev.walgo.dbseeder.db;
+
+import com.google.auto.service.AutoService;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+@AutoService(Database.class)
+public class HSQLDatabase extends UnknownDatabase {
+
+    @Override
+    public boolean handlesJDBCUrl(String url) {
+        return url.startsWith("jdbc:hsqldb:");
+    }
+
+    @Override
+    public String createTempTable(String name, String query, boolean withData) {
+        return "DECLARE LOCAL TEMPORARY TABLE %s AS (%s) WITH %sDATA ON COMMIT PRESERVE ROWS".formatted(name, query,
+                withData ? "" : "NO ");
+    }
+
+    @Override
+    public String dropTempTable(String name) {
+        return "DROP TABLE SESSION." + name;
+    }
+
+    @Override
+    public boolean hasUpsert() {
+        return true;
+    }
+
+    /**
+     * Upsert via <code>MERGE</code>.
+     * <p>
+     * Values are used directly in clauses instead of <code>USING (VALUES ...)</code> row, because HSQLDB can't
+     * resolve types of parameters there.
+     */
+    @Override
+    public Upsert upsert(String table, Map<String, String> values, Collection<String> keys) {
+        List<String> columns = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        List<String> updates = new ArrayList<>();
+        for (String key : keys) {
+            conditions.add(key + " = " + values.get(key));
+            columns.add(key);
+        }
+        values.forEach((column, value) -> {
+            if (!keys.contains(column)) {
+                updates.add(column + " = " + value);
+                columns.add(column);
+            }
+        });
+        columns.addAll(values.keySet());
+        StringBuilder sql = new StringBuilder()
+                .append("MERGE INTO ").append(table)
+                .append(" USING (VALUES (0)) AS dbseeder_row (dbseeder_value) ON ")
+                .append(String.join(" AND ", conditions));
+        if (!updates.isEmpty()) {
+            sql.append(" WHEN MATCHED THEN UPDATE SET ").append(String.join(", ", updates));
+        }
+        sql.append(" WHEN NOT MATCHED THEN INSERT (").append(String.join(", ", values.keySet()))
+                .append(") VALUES (").append(String.join(", ", values.values())).append(')');
+        return new Upsert(sql.toString(), columns);
+    }
+
+}
@@ -1,9 +1,21 @@
 package dev.walgo.dbseeder.db;
 
 import com.google.auto.service.AutoService;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.sql.Types;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import org.postgresql.copy.CopyIn;
 import org.postgresql.jdbc.PgConnection;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,10 +24,21 @@ import org.slf4j.LoggerFactory;
 public class PostgreSQLDatabase extends Database {
 
     private static final Logger LOG = LoggerFactory.getLogger(PostgreSQLDatabase.class);
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
 
     @Override
     public void setConnection(Connection conn) {
         super.setConnection(conn);
+        if (!(this.conn instanceof PgConnection)) {
+            // other pools (e.g. HikariCP) expose raw connection via JDBC unwrap
+            try {
+                if (conn.isWrapperFor(PgConnection.class)) {
+                    this.conn = conn.unwrap(PgConnection.class);
+                }
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
         if (!(this.conn instanceof PgConnection)) {
             throw new UnsupportedOperationException(
                     "Connection of type [%s] is not PostgreSQL connection".formatted(conn.getClass()));
@@ -51,4 +74,123 @@ public class PostgreSQLDatabase extends Database {
         return stringValue;
     }
 
+    @Override
+    public boolean hasUpsert() {
+        return true;
+    }
+
+    /**
+     * Upsert via <code>INSERT ... ON CONFLICT</code>.
+     */
+    @Override
+    public Upsert upsert(String table, Map<String, String> values, Collection<String> keys) {
+        List<String> updates = new ArrayList<>();
+        for (String column : values.keySet()) {
+            if (!keys.contains(column)) {
+                updates.add(column + " = EXCLUDED." + column);
+            }
+        }
+        String sql = "INSERT INTO %s (%s) VALUES (%s) ON CONFLICT (%s) DO ".formatted(table,
+                String.join(", ", values.keySet()), String.join(", ", values.values()), String.join(", ", keys));
+        sql += updates.isEmpty() ? "NOTHING" : "UPDATE SET " + String.join(", ", updates);
+        return new Upsert(sql, new ArrayList<>(values.keySet()));
+    }
+
+    @Override
+    public String createTempTable(String name, String query, boolean withData) {
+        return "CREATE TEMP TABLE %s AS %s WITH %sDATA".formatted(name, query, withData ? "" : "NO ");
+    }
+
+    @Override
+    public boolean hasUpdateFrom() {
+        return true;
+    }
+
+    @Override
+    public boolean hasBulkLoad() {
+        return true;
+    }
+
+    /**
+     * Bulk load via <code>COPY ... FROM STDIN</code> in text format.
+     */
+    @Override
+    public long bulkLoad(String table, List<String> columns, Iterable<Object[]> rows) throws SQLException {
+        String sql = "COPY %s (%s) FROM STDIN".formatted(table, String.join(", ", columns));
+        LOG.trace("Bulk load: {}", sql);
+        CopyIn copy = ((PgConnection) conn).getCopyAPI().copyIn(sql);
+        try {
+            StringBuilder buffer = new StringBuilder();
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    if (i > 0) {
+                        buffer.append('\t');
+                    }
+                    appendCopyValue(buffer, row[i]);
+                }
+                buffer.append('\n');
+                if (buffer.length() >= COPY_BUFFER_SIZE) {
+                    writeToCopy(copy, buffer);
+                }
+            }
+            writeToCopy(copy, buffer);
+            return copy.endCopy();
+        } finally {
+            if (copy.isActive()) {
+                copy.cancelCopy();
+            }
+        }
+    }
+
+    private static void writeToCopy(CopyIn copy, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copy.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    /**
+     * Append value in COPY text format.
+     * <p>
+     * Timestamps are written with offset of JVM time zone, like driver sends them, so <code>timestamptz</code> columns
+     * get the same instant as by insert.
+     *
+     * @param buffer buffer
+     * @param value  value, converted to column type
+     */
+    static void appendCopyValue(StringBuilder buffer, Object value) {
+        if (value == null) {
+            buffer.append("\\N");
+            return;
+        }
+        String text;
+        if (value instanceof Boolean boolValue) {
+            text = boolValue ? "t" : "f";
+        } else if (value instanceof byte[] bytes) {
+            text = "\\x" + HexFormat.of().formatHex(bytes);
+        } else if (value instanceof BigDecimal decimal) {
+            text = decimal.toPlainString();
+        } else if (value instanceof ZonedDateTime dateTime) {
+            text = dateTime.toOffsetDateTime().toString();
+        } else if (value instanceof Timestamp timestamp) {
+            text = timestamp.toLocalDateTime().atZone(ZoneId.systemDefault()).toOffsetDateTime().toString();
+        } else if (value instanceof Array array) {
+            // array literal, built by driver
+            text = array.toString();
+        } else if ((value instanceof Collection<?> collection) && collection.isEmpty()) {
+            text = "{}";
+        } else {
+            text = value.toString();
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            switch (ch) {
+                case '\\' -> buffer.append("\\\\");
+                case '\t' -> buffer.append("\\t");
+                case '\n' -> buffer.append("\\n");
+                case '\r' -> buffer.append("\\r");
+                default -> buffer.append(ch);
+            }
+        }
+    }
+
 }
@@ -0,0 +1,12 @@
+package dev.walgo.dbseeder.db;
+
+import java.util.List;
+
+/**
+ * Native upsert statement.
+ *
+ * @param sql     SQL
+ * @param columns columns in order of their values in SQL. The same column can be used more than once
+ */
+public record Upsert(String sql, List<String> columns) {
+}
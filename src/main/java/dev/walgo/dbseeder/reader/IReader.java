@@ -3,6 +3,9 @@ package dev.walgo.dbseeder.reader;
 import dev.walgo.dbseeder.data.SeedInfo;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.apache.commons.io.function.IOSupplier;
 
 public interface IReader {
 
@@ -23,4 +26,32 @@ public interface IReader {
      */
     SeedInfo read(String resourceName, InputStream input) throws IOException;
 
+    /**
+     * Read table info from file.
+     *
+     * @param resourceName name of resource
+     * @param file         file of resource
+     * @return source data after read
+     */
+    default SeedInfo read(String resourceName, Path file) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return read(resourceName, input);
+        }
+    }
+
+    /**
+     * Read table info from resource, which rows are read on demand by {@link SeedInfo#openRows()}.
+     * <p>
+     * Default implementation reads all rows into memory.
+     *
+     * @param resourceName name of resource
+     * @param opener       opener of new stream for resource
+     * @return source data after read of header
+     */
+    default SeedInfo stream(String resourceName, IOSupplier<InputStream> opener) throws IOException {
+        try (InputStream input = opener.get()) {
+            return read(resourceName, input);
+        }
+    }
+
 }
@@ -0,0 +1,294 @@
+package dev.walgo.dbseeder.reader.csv;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splitting of memory-mapped CSV file into chunks, which can be parsed independently.
+ * <p>
+ * Chunk starts at the start of a record, so a chunk never breaks a value. When values are quoted, the file is scanned
+ * with the same quoting rules as {@link CSVScanner} has, so line breaks inside quotes aren't treated as ends of
+ * records. Otherwise every line break ends a record, and only bytes around chunk boundaries are read.
+ */
+class CSVChunks {
+
+    private static final int WINDOW_SIZE = 64 * 1024;
+    private static final int SCAN_WINDOW_SIZE = 16 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final byte delimiter;
+    private final byte arrayDelimiter;
+    private final byte[] comment;
+    private final byte quote;
+    private final boolean isQuoted;
+
+    /**
+     * Create splitter.
+     * <p>
+     * Delimiters and quote must be ASCII characters, so they can be found in UTF-8 bytes (see {@link #isSplittable}).
+     *
+     * @param channel        file
+     * @param delimiter      delimiter of values
+     * @param arrayDelimiter delimiter of array items
+     * @param comment        start of comment line
+     * @param quote          quote of values or null if values aren't quoted
+     * @throws IOException on read error
+     */
+    CSVChunks(FileChannel channel, char delimiter, char arrayDelimiter, String comment, Character quote)
+            throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.delimiter = (byte) delimiter;
+        this.arrayDelimiter = (byte) arrayDelimiter;
+        this.comment = comment.getBytes(StandardCharsets.UTF_8);
+        this.isQuoted = quote != null;
+        this.quote = isQuoted ? (byte) quote.charValue() : 0;
+    }
+
+    /**
+     * Can file with these settings be split by bytes?
+     *
+     * @param delimiter      delimiter of values
+     * @param arrayDelimiter delimiter of array items
+     * @param quote          quote of values or null
+     * @return true if all characters are ASCII
+     */
+    static boolean isSplittable(char delimiter, char arrayDelimiter, Character quote) {
+        return (delimiter < 0x80) && (arrayDelimiter < 0x80) && ((quote == null) || (quote < 0x80));
+    }
+
+    /**
+     * Position after the line, which contains position.
+     *
+     * @param from position
+     * @return position after line break or size of file
+     * @throws IOException on read error
+     */
+    long lineEnd(long from) throws IOException {
+        long pos = from;
+        while (pos < size) {
+            MappedByteBuffer window = map(pos, WINDOW_SIZE);
+            for (int i = 0; i < window.limit(); i++) {
+                byte b = window.get(i);
+                if (b == '\n') {
+                    return pos + i + 1;
+                }
+                if (b == '\r') {
+                    long next = pos + i + 1;
+                    return (next < size) && (byteAt(next) == '\n') ? next + 1 : next;
+                }
+            }
+            pos += window.limit();
+        }
+        return size;
+    }
+
+    /**
+     * Split file into chunks.
+     *
+     * @param from      position of the first record
+     * @param chunkSize approximate size of chunk
+     * @param arrays    flags of array columns by column index
+     * @return start positions of chunks in order of file, the first one is <code>from</code>; every chunk ends at the
+     *         start of the next one or at the end of file
+     * @throws IOException on read error
+     */
+    List<Long> split(long from, int chunkSize, boolean[] arrays) throws IOException {
+        List<Long> result = new ArrayList<>();
+        result.add(from);
+        if (isQuoted) {
+            new RecordTracker(arrays).split(from, chunkSize, result);
+            return result;
+        }
+        long start = from;
+        while (size - start > chunkSize) {
+            start = lineEnd(start + chunkSize);
+            if (start < size) {
+                result.add(start);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Number of line breaks in part of file.
+     *
+     * @param start position of the first byte
+     * @param end   position after the last byte
+     * @return number of lines
+     * @throws IOException on read error
+     */
+    int countLines(long start, long end) throws IOException {
+        MappedByteBuffer buffer = map(start, end - start);
+        int result = 0;
+        for (int i = 0; i < buffer.limit(); i++) {
+            byte b = buffer.get(i);
+            if ((b == '\n') || ((b == '\r') && ((i + 1 == buffer.limit()) || (buffer.get(i + 1) != '\n')))) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    MappedByteBuffer map(long start, long length) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length, size - start));
+    }
+
+    private byte byteAt(long pos) throws IOException {
+        return map(pos, 1).get(0);
+    }
+
+    /**
+     * State machine, which finds ends of records with quoted values.
+     */
+    private class RecordTracker {
+
+        private static final int LINE_START = 0;
+        private static final int COMMENT = 1;
+        private static final int VALUE = 2;
+        private static final int QUOTED = 3;
+        private static final int QUOTE_IN_QUOTED = 4;
+
+        private final boolean[] arrays;
+        private int state = LINE_START;
+        private int commentMatched;
+        private int column;
+        private boolean isValueStart;
+        private boolean hasQuotes;
+        private boolean isCr;
+
+        RecordTracker(boolean[] arrays) {
+            this.arrays = arrays;
+        }
+
+        void split(long from, int chunkSize, List<Long> result) throws IOException {
+            long target = from + chunkSize;
+            long pos = from;
+            while (pos < size) {
+                MappedByteBuffer window = map(pos, SCAN_WINDOW_SIZE);
+                for (int i = 0; i < window.limit(); i++) {
+                    long recordEnd = accept(window.get(i), pos + i);
+                    if ((recordEnd >= target) && (recordEnd < size)) {
+                        result.add(recordEnd);
+                        target = recordEnd + chunkSize;
+                    }
+                }
+                pos += window.limit();
+            }
+        }
+
+        /**
+         * Process byte.
+         *
+         * @param b   byte
+         * @param pos position of byte
+         * @return position after the end of record, which is found by this byte, or -1
+         */
+        private long accept(byte b, long pos) {
+            long result = -1;
+            if (isCr) {
+                // record is ended by CR, it's followed by LF or by the next line
+                isCr = false;
+                if (b == '\n') {
+                    return pos + 1;
+                }
+                result = pos;
+            }
+            boolean isLineEnd = (b == '\n') || (b == '\r');
+            switch (state) {
+                case LINE_START:
+                    if (isLineEnd) {
+                        return endLine(b, pos, result);
+                    }
+                    if ((b & 0xff) <= ' ') {
+                        break;
+                    }
+                    commentMatched = 0;
+                    state = COMMENT;
+                    // fall through to comment matching
+                case COMMENT:
+                    if (commentMatched >= 0) {
+                        if (commentMatched == comment.length) {
+                            commentMatched = -1;
+                        } else if (comment[commentMatched] == b) {
+                            commentMatched++;
+                            if (commentMatched == comment.length) {
+                                commentMatched = -1;
+                            }
+                            break;
+                        } else if (commentMatched == 0) {
+                            startRecord();
+                            return acceptValue(b, pos, result);
+                        } else {
+                            // matched part of comment is the start of value
+                            startRecord();
+                            isValueStart = false;
+                            return acceptValue(b, pos, result);
+                        }
+                    }
+                    if (isLineEnd) {
+                        return endLine(b, pos, result);
+                    }
+                    break;
+                case QUOTE_IN_QUOTED:
+                    if (b == quote) {
+                        state = QUOTED;
+                        break;
+                    }
+                    state = VALUE;
+                    return acceptValue(b, pos, result);
+                case QUOTED:
+                    if (b == quote) {
+                        state = QUOTE_IN_QUOTED;
+                    }
+                    break;
+                default:
+                    return acceptValue(b, pos, result);
+            }
+            return result;
+        }
+
+        private void startRecord() {
+            state = VALUE;
+            column = 0;
+            isValueStart = true;
+            hasQuotes = false;
+        }
+
+        private long acceptValue(byte b, long pos, long result) {
+            if ((b == '\n') || (b == '\r')) {
+                return endLine(b, pos, result);
+            }
+            if (b == delimiter) {
+                column++;
+                isValueStart = true;
+                hasQuotes = false;
+            } else if ((b == arrayDelimiter) && (column < arrays.length) && arrays[column]) {
+                isValueStart = true;
+                hasQuotes = false;
+            } else if ((b == quote) && isValueStart && !hasQuotes) {
+                state = QUOTED;
+                hasQuotes = true;
+                isValueStart = false;
+            } else if ((b & 0xff) > ' ') {
+                isValueStart = false;
+            }
+            return result;
+        }
+
+        private long endLine(byte b, long pos, long result) {
+            state = LINE_START;
+            if (b == '\r') {
+                isCr = true;
+                return result;
+            }
+            return pos + 1;
+        }
+    }
+
+}
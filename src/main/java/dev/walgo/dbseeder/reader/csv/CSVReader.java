@@ -4,20 +4,36 @@ import dev.walgo.dbseeder.DBSSettings;
 import dev.walgo.dbseeder.data.ActionType;
 import dev.walgo.dbseeder.data.DataRow;
 import dev.walgo.dbseeder.data.ReferenceInfo;
+import dev.walgo.dbseeder.data.RowCursor;
 import dev.walgo.dbseeder.data.SeedInfo;
 import dev.walgo.dbseeder.reader.IReader;
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.function.IOSupplier;
+import org.apache.commons.io.input.CharSequenceReader;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +42,7 @@ public class CSVReader implements IReader {
 
     private static final Logger LOG = LoggerFactory.getLogger(CSVReader.class);
     private static final Pattern REFERENCE_REGEX = Pattern.compile("(.+?)=(.+?)\\((.+?)\\)");
+    private static final int HEADER_LINES = 2;
 
     private final DBSSettings settings;
 
@@ -36,59 +53,180 @@ public class CSVReader implements IReader {
     @Override
     public SeedInfo read(String resourceName, InputStream input) {
         SeedInfo info = new SeedInfo();
-        int lineNum = 0;
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
-            String rawLine = reader.readLine();
-            String line = StringUtils.trim(rawLine);
-            if (StringUtils.isEmpty(line)) {
-                throw new RuntimeException("Line 1 (field list) not defined");
-            }
-            lineNum++;
-            List<SeedInfo.FieldInfo> fields = parseFieldList(line, info);
-            line = reader.readLine();
-            if (StringUtils.isEmpty(line)) {
-                throw new RuntimeException("Line 2 (settings) not defined");
-            }
-            lineNum++;
-            parseSettings(line, info);
+        try (Reader reader = newReader(input)) {
+            CSVScanner scanner = newScanner(reader);
+            boolean[] arrays = arrayFlags(readHeader(scanner, info));
             List<DataRow> data = info.getData();
-            while ((rawLine = reader.readLine()) != null) {
-                lineNum++;
-                line = StringUtils.trim(rawLine);
+            List<Object> values;
+            while ((values = scanner.next(arrays)) != null) {
+                data.add(toRow(values, scanner.recordLine(), info));
+            }
+        } catch (IOException ex) {
+            throw new RuntimeException(ex);
+        }
+        return info;
+    }
 
-                if (StringUtils.isEmpty(line) || line.startsWith(settings.csvComment())) {
-                    continue;
+    /**
+     * Read file, which is larger than {@link DBSSettings#csvChunkSize()}, by chunks in parallel.
+     * <p>
+     * File is memory-mapped and split into chunks, which start at starts of records. Lines of every chunk are counted,
+     * so rows keep numbers of their lines in file.
+     */
+    @Override
+    public SeedInfo read(String resourceName, Path file) throws IOException {
+        int chunkSize = settings.csvChunkSize();
+        if ((chunkSize < 1) || (Files.size(file) <= chunkSize)
+                || !CSVChunks.isSplittable(settings.csvDelimiter(), settings.csvArrayDelimiter(),
+                        settings.csvQuote())) {
+            return IReader.super.read(resourceName, file);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            CSVChunks chunks = new CSVChunks(channel, settings.csvDelimiter(), settings.csvArrayDelimiter(),
+                    settings.csvComment(), settings.csvQuote());
+            SeedInfo info = new SeedInfo();
+            long dataStart = chunks.lineEnd(chunks.lineEnd(0));
+            String header = StandardCharsets.UTF_8.decode(chunks.map(0, dataStart)).toString();
+            boolean[] arrays = arrayFlags(readHeader(newScanner(new StringReader(header)), info));
+            List<Long> starts = chunks.split(dataStart, chunkSize, arrays);
+            starts.add(channel.size());
+            int count = starts.size() - 1;
+            LOG.debug("Read [{}] by [{}] chunks", resourceName, count);
+            // files can be read concurrently, so processors are shared between them
+            int threads = Runtime.getRuntime().availableProcessors() / Math.max(1, settings.readParallelism());
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(count, threads)));
+            try {
+                List<Future<Integer>> lines = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    long start = starts.get(i);
+                    long end = starts.get(i + 1);
+                    lines.add(executor.submit(() -> chunks.countLines(start, end)));
                 }
-                DataRow row = new DataRow(lineNum);
-                String[] parts = StringUtils.splitPreserveAllTokens(line, settings.csvDelimiter());
-                if (parts.length != info.getFields().size()) {
-                    if (info.ignoreOmits()) {
-                        LOG.warn("There is [{}] columns in header but [{}] in line [{}]", info.getFields().size(),
-                                parts.length, lineNum);
-                        parts = Arrays.copyOf(parts, info.getFields().size());
-                    } else {
-                        LOG.warn("Parts = {}", Arrays.asList(parts));
-                        throw new RuntimeException("There is [%s] columns in header but [%s] in line [%s]"
-                                .formatted(info.getFields().size(), parts.length, lineNum));
-                    }
+                List<Future<List<DataRow>>> rows = new ArrayList<>(count);
+                int firstLine = HEADER_LINES;
+                for (int i = 0; i < count; i++) {
+                    long start = starts.get(i);
+                    long end = starts.get(i + 1);
+                    int lineNum = firstLine;
+                    rows.add(executor.submit(() -> readChunk(chunks, start, end, lineNum, info, arrays)));
+                    firstLine += lines.get(i).get();
                 }
-                for (int i = 0; i < parts.length; i++) {
-                    String part = StringUtils.trim(parts[i]);
-                    if (fields.get(i).isArray) {
-                        String[] strElems = StringUtils.stripAll(StringUtils.split(part, settings.csvArrayDelimiter()));
-                        row.addValue(Arrays.asList(strElems));
-                    } else {
-                        row.addValue(part);
-                    }
+                List<DataRow> data = info.getData();
+                for (Future<List<DataRow>> chunkRows : rows) {
+                    data.addAll(chunkRows.get());
                 }
-                data.add(row);
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof RuntimeException runtimeEx) {
+                    throw runtimeEx;
+                }
+                throw new RuntimeException(ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            } finally {
+                executor.shutdownNow();
             }
-        } catch (IOException ex) {
-            throw new RuntimeException(ex);
+            return info;
         }
+    }
+
+    private List<DataRow> readChunk(CSVChunks chunks, long start, long end, int lineNum, SeedInfo info,
+            boolean[] arrays) throws IOException {
+        CharBuffer chars = StandardCharsets.UTF_8.decode(chunks.map(start, end - start));
+        CSVScanner scanner = newScanner(new CharSequenceReader(chars));
+        scanner.setLineNumber(lineNum);
+        List<DataRow> result = new ArrayList<>();
+        List<Object> values;
+        while ((values = scanner.next(arrays)) != null) {
+            result.add(toRow(values, scanner.recordLine(), info));
+        }
+        return result;
+    }
+
+    /**
+     * Read header of resource, rows are read from new stream on every opening of {@link SeedInfo#openRows()}.
+     */
+    @Override
+    public SeedInfo stream(String resourceName, IOSupplier<InputStream> opener) throws IOException {
+        SeedInfo info = new SeedInfo();
+        boolean[] arrays;
+        try (Reader reader = newReader(opener.get())) {
+            arrays = arrayFlags(readHeader(newScanner(reader), info));
+        }
+        info.setRowSource(() -> {
+            Reader reader = null;
+            try {
+                reader = newReader(opener.get());
+                CSVScanner scanner = newScanner(reader);
+                for (int i = 0; i < HEADER_LINES; i++) {
+                    scanner.readLine();
+                }
+                return new ScannerCursor(reader, scanner, info, arrays);
+            } catch (IOException ex) {
+                IOUtils.closeQuietly(reader);
+                throw new RuntimeException(ex);
+            }
+        });
         return info;
     }
 
+    private static Reader newReader(InputStream input) {
+        return new InputStreamReader(input, StandardCharsets.UTF_8);
+    }
+
+    private CSVScanner newScanner(Reader reader) {
+        return new CSVScanner(reader, settings.csvDelimiter(), settings.csvArrayDelimiter(), settings.csvComment(),
+                settings.csvQuote());
+    }
+
+    private static boolean[] arrayFlags(List<SeedInfo.FieldInfo> fields) {
+        boolean[] result = new boolean[fields.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = fields.get(i).isArray;
+        }
+        return result;
+    }
+
+    private List<SeedInfo.FieldInfo> readHeader(CSVScanner scanner, SeedInfo info) throws IOException {
+        String line = StringUtils.trim(scanner.readLine());
+        if (StringUtils.isEmpty(line)) {
+            throw new RuntimeException("Line 1 (field list) not defined");
+        }
+        List<SeedInfo.FieldInfo> fields = parseFieldList(line, info);
+        line = scanner.readLine();
+        if (StringUtils.isEmpty(line)) {
+            throw new RuntimeException("Line 2 (settings) not defined");
+        }
+        parseSettings(line, info);
+        return fields;
+    }
+
+    /**
+     * Make row of scanned values.
+     *
+     * @param values  values of record
+     * @param lineNum line number, where record starts
+     * @param info    source info
+     * @return row
+     */
+    private static DataRow toRow(List<Object> values, int lineNum, SeedInfo info) {
+        int size = info.getFields().size();
+        if (values.size() != size) {
+            if (info.ignoreOmits()) {
+                LOG.warn("There is [{}] columns in header but [{}] in line [{}]", size, values.size(), lineNum);
+            } else {
+                LOG.warn("Parts = {}", values);
+                throw new RuntimeException("There is [%s] columns in header but [%s] in line [%s]"
+                        .formatted(size, values.size(), lineNum));
+            }
+        }
+        DataRow row = new DataRow(lineNum);
+        for (int i = 0; i < size; i++) {
+            row.addValue(i < values.size() ? values.get(i) : null);
+        }
+        return row;
+    }
+
     private List<SeedInfo.FieldInfo> parseFieldList(String line, SeedInfo info) {
         List<SeedInfo.FieldInfo> result = new ArrayList<>();
         String[] parts = StringUtils.split(line, settings.csvDelimiter());
@@ -185,4 +323,71 @@ public class CSVReader implements IReader {
         }
     }
 
+    /**
+     * Cursor, which scans rows of opened resource while they are iterated.
+     */
+    private static class ScannerCursor implements RowCursor {
+
+        private final Reader reader;
+        private final CSVScanner scanner;
+        private final SeedInfo info;
+        private final boolean[] arrays;
+        private boolean isIterated;
+
+        ScannerCursor(Reader reader, CSVScanner scanner, SeedInfo info, boolean[] arrays) {
+            this.reader = reader;
+            this.scanner = scanner;
+            this.info = info;
+            this.arrays = arrays;
+        }
+
+        @Override
+        public Iterator<DataRow> iterator() {
+            if (isIterated) {
+                throw new IllegalStateException("Rows of [%s] are already iterated".formatted(info.getResourceName()));
+            }
+            isIterated = true;
+            return new Iterator<>() {
+                private DataRow next;
+                private boolean isEnd;
+
+                @Override
+                public boolean hasNext() {
+                    if ((next == null) && !isEnd) {
+                        try {
+                            List<Object> values = scanner.next(arrays);
+                            if (values == null) {
+                                isEnd = true;
+                            } else {
+                                next = toRow(values, scanner.recordLine(), info);
+                            }
+                        } catch (IOException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    }
+                    return next != null;
+                }
+
+                @Override
+                public DataRow next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    DataRow row = next;
+                    next = null;
+                    return row;
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            try {
+                reader.close();
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+    }
+
 }
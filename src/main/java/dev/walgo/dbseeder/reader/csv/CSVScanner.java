@@ -0,0 +1,330 @@
+package dev.walgo.dbseeder.reader.csv;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Single-pass scanner of CSV records.
+ * <p>
+ * Characters are read into a buffer and split into values by a state machine, so no strings are created for lines or
+ * parts of lines, only for final values. Values are trimmed, empty lines and lines started with comment are skipped.
+ * Values of array columns are split into items in the same pass, empty items are skipped.
+ * <p>
+ * When quote is set, value (or array item) started with quote is quoted: delimiters and line breaks inside quotes
+ * belong to the value, doubled quote means quote itself, and quoted content isn't trimmed.
+ */
+class CSVScanner {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int EOF = -1;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final char arrayDelimiter;
+    private final String comment;
+    private final char quote;
+    private final boolean isQuoted;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder value = new StringBuilder();
+    private int pos;
+    private int limit;
+    private int lineNum;
+    private int recordLine;
+
+    // state of current value
+    private List<String> items;
+    private boolean hasQuotes;
+    private int quotedLength;
+
+    /**
+     * Create scanner.
+     *
+     * @param reader         source
+     * @param delimiter      delimiter of values
+     * @param arrayDelimiter delimiter of array items
+     * @param comment        start of comment line
+     * @param quote          quote of values or null if values aren't quoted
+     */
+    CSVScanner(Reader reader, char delimiter, char arrayDelimiter, String comment, Character quote) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.arrayDelimiter = arrayDelimiter;
+        this.comment = comment;
+        this.isQuoted = quote != null;
+        this.quote = isQuoted ? quote : 0;
+    }
+
+    /**
+     * Set number of lines before source, when source is a part of file.
+     *
+     * @param lineNum number of the line before source
+     */
+    void setLineNumber(int lineNum) {
+        this.lineNum = lineNum;
+    }
+
+    /**
+     * Number of line, where the last read record starts.
+     *
+     * @return line number, starting from 1
+     */
+    int recordLine() {
+        return recordLine;
+    }
+
+    /**
+     * Read line as is.
+     *
+     * @return line without line break or null at the end of source
+     * @throws IOException on read error
+     */
+    String readLine() throws IOException {
+        if (peek() == EOF) {
+            return null;
+        }
+        lineNum++;
+        value.setLength(0);
+        int c;
+        while (!isLineEnd(c = read())) {
+            value.append((char) c);
+        }
+        skipLf(c);
+        return value.toString();
+    }
+
+    /**
+     * Read next record.
+     *
+     * @param arrays flags of array columns by column index
+     * @return values (lists of items for array columns) or null at the end of source
+     * @throws IOException on read error
+     */
+    List<Object> next(boolean[] arrays) throws IOException {
+        while (true) {
+            if (peek() == EOF) {
+                return null;
+            }
+            lineNum++;
+            recordLine = lineNum;
+            int c = peek();
+            while ((c <= ' ') && !isLineEnd(c)) {
+                pos++;
+                c = peek();
+            }
+            if (isLineEnd(c)) {
+                skipLf(read());
+                continue;
+            }
+            if (startsWith(comment)) {
+                int skipped;
+                while (!isLineEnd(skipped = read())) {
+                    // skip comment
+                }
+                skipLf(skipped);
+                continue;
+            }
+            return scanRecord(arrays);
+        }
+    }
+
+    private List<Object> scanRecord(boolean[] arrays) throws IOException {
+        List<Object> result = new ArrayList<>(arrays.length);
+        List<Boolean> blanks = null;
+        startValue(isArray(arrays, 0));
+        boolean inQuotes = false;
+        while (true) {
+            int c = read();
+            if (inQuotes) {
+                if (c == EOF) {
+                    throw new RuntimeException("Quoted value in line [%s] isn't closed".formatted(recordLine));
+                }
+                if (c == quote) {
+                    if (peek() == quote) {
+                        pos++;
+                        value.append(quote);
+                    } else {
+                        inQuotes = false;
+                        quotedLength = value.length();
+                    }
+                } else if (isLineEnd(c)) {
+                    skipLf(c);
+                    lineNum++;
+                    value.append('\n');
+                } else {
+                    value.append((char) c);
+                }
+                continue;
+            }
+            if ((c == delimiter) || isLineEnd(c)) {
+                boolean isBlank = endValue(result);
+                if (delimiter <= ' ') {
+                    // values around whitespace delimiter are trimmed with the line
+                    if (blanks == null) {
+                        blanks = new ArrayList<>();
+                    }
+                    blanks.add(isBlank);
+                }
+                if (c != delimiter) {
+                    skipLf(c);
+                    break;
+                }
+                startValue(isArray(arrays, result.size()));
+            } else if ((items != null) && (c == arrayDelimiter)) {
+                endItem();
+            } else if (isQuoted && (c == quote) && !hasQuotes && isBlank(value)) {
+                inQuotes = true;
+                hasQuotes = true;
+                value.setLength(0);
+            } else {
+                value.append((char) c);
+            }
+        }
+        if (blanks != null) {
+            while (!result.isEmpty() && blanks.get(result.size() - 1)) {
+                result.remove(result.size() - 1);
+            }
+        }
+        return result;
+    }
+
+    private static boolean isArray(boolean[] arrays, int idx) {
+        return (idx < arrays.length) && arrays[idx];
+    }
+
+    private void startValue(boolean isArray) {
+        items = isArray ? new ArrayList<>() : null;
+        resetValue();
+    }
+
+    private void resetValue() {
+        value.setLength(0);
+        hasQuotes = false;
+        quotedLength = 0;
+    }
+
+    /**
+     * Add value to record.
+     *
+     * @param result values of record
+     * @return true if value is empty and isn't quoted
+     */
+    private boolean endValue(List<Object> result) {
+        if (items != null) {
+            endItem();
+            result.add(items);
+            return items.isEmpty();
+        }
+        String trimmed = trimmed(false);
+        result.add(trimmed);
+        return trimmed.isEmpty() && !hasQuotes;
+    }
+
+    private void endItem() {
+        String item = trimmed(true);
+        if (!item.isEmpty() || hasQuotes) {
+            items.add(item);
+        }
+        resetValue();
+    }
+
+    /**
+     * Current value without leading and trailing spaces, quoted content is kept as is.
+     *
+     * @param isItem is value an array item (it's stripped of unicode whitespaces too)
+     * @return value
+     */
+    private String trimmed(boolean isItem) {
+        int start = 0;
+        int end = value.length();
+        if (!hasQuotes) {
+            while ((start < end) && isSpace(value.charAt(start), isItem)) {
+                start++;
+            }
+        }
+        while ((end > Math.max(start, quotedLength)) && isSpace(value.charAt(end - 1), isItem)) {
+            end--;
+        }
+        return value.substring(start, end);
+    }
+
+    private static boolean isSpace(char c, boolean isItem) {
+        return (c <= ' ') || (isItem && Character.isWhitespace(c));
+    }
+
+    private static boolean isBlank(StringBuilder text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!isSpace(text.charAt(i), true)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLineEnd(int c) {
+        return (c == '\n') || (c == '\r') || (c == EOF);
+    }
+
+    /**
+     * Skip LF of CRLF line break.
+     *
+     * @param c read line end
+     * @throws IOException on read error
+     */
+    private void skipLf(int c) throws IOException {
+        if ((c == '\r') && (peek() == '\n')) {
+            pos++;
+        }
+    }
+
+    private int read() throws IOException {
+        if ((pos == limit) && !fill(1)) {
+            return EOF;
+        }
+        return buffer[pos++];
+    }
+
+    private int peek() throws IOException {
+        if ((pos == limit) && !fill(1)) {
+            return EOF;
+        }
+        return buffer[pos];
+    }
+
+    private boolean startsWith(String prefix) throws IOException {
+        if ((limit - pos < prefix.length()) && !fill(prefix.length())) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (buffer[pos + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read source until buffer contains required number of characters.
+     *
+     * @param required number of characters
+     * @return false if source ends before
+     * @throws IOException on read error
+     */
+    private boolean fill(int required) throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        while (limit < required) {
+            int read = reader.read(buffer, limit, buffer.length - limit);
+            if (read == EOF) {
+                return false;
+            }
+            limit += read;
+        }
+        return true;
+    }
+
+}
@@ -22,7 +22,7 @@ public class JSONReader implements IReader {
         this.settings = settings;
     }
 
-    private static ObjectMapper getMapper() {
+    private static synchronized ObjectMapper getMapper() {
         if (mapper == null) {
             mapper = new ObjectMapper();
             // Serialization & deserialization settings
@@ -1,25 +1,22 @@
 package dev.walgo.dbseeder.writer;
 
+import dev.walgo.dbseeder.CommitMode;
 import dev.walgo.dbseeder.DBSSettings;
+import dev.walgo.dbseeder.ExistenceCheck;
 import dev.walgo.dbseeder.data.ActionType;
 import dev.walgo.dbseeder.data.DataRow;
 import dev.walgo.dbseeder.data.ReferenceInfo;
+import dev.walgo.dbseeder.data.RowCursor;
 import dev.walgo.dbseeder.data.SeedInfo;
 import dev.walgo.dbseeder.db.Database;
-import dev.walgo.dbseeder.db.UnknownDatabase;
 import dev.walgo.walib.db.ColumnInfo;
-import dev.walgo.walib.db.DBInfo;
 import dev.walgo.walib.db.DBUtils;
 import dev.walgo.walib.db.TableInfo;
-import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.sql.Date;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
@@ -28,14 +25,24 @@ import java.time.Instant;
 import java.time.ZonedDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.stream.StreamSupport;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.StatementConfiguration;
 import org.apache.commons.dbutils.handlers.MapHandler;
 import org.apache.commons.dbutils.handlers.ScalarHandler;
 import org.apache.commons.lang3.function.TriConsumer;
@@ -47,49 +54,73 @@ public class DBWriter implements IWriter {
 
     private static final Logger LOG = LoggerFactory.getLogger(DBWriter.class);
     private static final QueryRunner SQL = new QueryRunner();
+    private static final String HEX_PREFIX = "\\x";
+    private static final String BASE64_PREFIX = "base64:";
+    private static final int FETCH_SIZE = 10_000;
+    private static final Object NOT_CONVERTED = new Object();
+    private static final QueryRunner STREAM_SQL = new QueryRunner(
+            new StatementConfiguration.Builder().fetchSize(FETCH_SIZE).build());
     private static final ResultSetHandler<Map<String, Object>> insertHandler = new MapHandler();
 
-    private final List<SeedInfo> infos;
+    private final SeedSession session;
+    private final boolean ownSession;
     // private final String schema;
     private final DBSSettings settings;
-    private final DBInfo dbInfo;
+    private final ReferenceCache referenceCache = new ReferenceCache();
+    private final StatementCache statements;
+    private final Map<SeedInfo, ValueConverter[]> converters = new IdentityHashMap<>();
     private Database database;
+    // row of pipeline, which is written now, and its values converted by pipeline
+    private DataRow pipelinedRow;
+    private Object[] pipelinedValues;
+
+    /**
+     * Converter of source value into value of DB column.
+     */
+    @FunctionalInterface
+    private interface ValueConverter {
+
+        Object convert(Object value);
+
+    }
 
     public DBWriter(List<SeedInfo> infos, DBSSettings settings) {
-        this.infos = infos;
+        this(new SeedSession(infos, settings), settings, true);
+    }
+
+    /**
+     * Create writer, which borrows metadata, dialect and compiled statements from session.
+     *
+     * @param session  session of run
+     * @param settings settings with connection of writer
+     */
+    public DBWriter(SeedSession session, DBSSettings settings) {
+        this(session, settings, false);
+    }
+
+    private DBWriter(SeedSession session, DBSSettings settings, boolean ownSession) {
+        this.session = session;
+        this.ownSession = ownSession;
 //        this.schema = schema;
         this.settings = settings;
-        this.dbInfo = new DBInfo(settings.connection(), null, settings.dbSchema(), null);
-        final ServiceLoader<Database> databases = ServiceLoader.load(Database.class);
-        String url = null;
-        try {
-            url = settings.connection().getMetaData().getURL();
-        } catch (SQLException ex) {
-            LOG.error("Can't find database URL", ex);
-        }
-        if (url != null) {
-            for (Database db : databases) {
-                if (db.handlesJDBCUrl(url)) {
-                    this.database = db;
-                    break;
-                }
-            }
-        }
-        if (this.database == null) {
-            this.database = new UnknownDatabase();
+        if (settings.connection() == null) {
+            throw new IllegalArgumentException("Writer requires connection, lease it from data source");
         }
-        this.database.setConnection(settings.connection());
+        this.statements = new StatementCache(settings.connection(), settings.statementCacheSize());
+        this.database = session.newDatabase(settings.connection());
     }
 
     private void checkSeed(SeedInfo info) {
         try {
-            Map<String, TableInfo> tableMap = dbInfo.getTablesAsMap();
+            Map<String, TableInfo> tableMap = session.getTables();
             TableInfo table = tableMap.get(info.getTableName().toLowerCase(Locale.ROOT));
             if (table == null) {
                 throw new RuntimeException("Table [%s] doesn't exist".formatted(info.getTableName()));
             }
-            if (database.insertHasReturning()) {
+            if (database.insertHasReturning() && !isInsertBatchable(info)) {
                 info.setTableKeys(table.getKeys());
+            } else {
+                info.setTableKeys(null);
             }
             Map<String, ColumnInfo> fields = table.getFields();
             info.getFields().forEach((dataField, idx) -> {
@@ -184,8 +215,584 @@ public class DBWriter implements IWriter {
         event.accept(info, row, result);
     }
 
+    protected <T> boolean hasEvent(Map<String, T> events, SeedInfo info) {
+        return (events != null)
+                && (events.containsKey(info.getTableName()) || events.containsKey(DBSSettings.ANY_TABLE));
+    }
+
+    /**
+     * Can rows of given seed be written via JDBC batches?
+     * <p>
+     * Batch is not used for self-referenced tables, because referenced rows must be written before the next row is
+     * processed.
+     *
+     * @param info source info
+     * @return true if batches can be used
+     */
+    private boolean isBatchable(SeedInfo info) {
+        if (settings.batchSize() < 2) {
+            return false;
+        }
+        for (ReferenceInfo ref : info.getReferences().values()) {
+            if (ref.getTableName().equalsIgnoreCase(info.getTableName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isInsertBatchable(SeedInfo info) {
+        return isBatchable(info) && !(database.insertHasReturning() && hasEvent(settings.onAfterInsert(), info));
+    }
+
+    private List<Object> keyValues(SeedInfo info, DataRow data) {
+        List<Object> result = new ArrayList<>(info.getKeys().size());
+        for (Integer idx : info.getKeys().values()) {
+            result.add(data.values().get(idx));
+        }
+        return result;
+    }
+
+    private List<RequestInfo.Field> keyFields(SeedInfo info) {
+        List<RequestInfo.Field> result = new ArrayList<>(info.getKeys().size());
+        info.getKeys().keySet().forEach(key -> result.add(new RequestInfo.Field(key, info.getFields().get(key).index)));
+        return result;
+    }
+
+    /**
+     * Key values of row, converted to the DB types.
+     *
+     * @param info      source info
+     * @param keyFields key fields
+     * @param data      row
+     * @return converted key values or null if key contains direct values
+     */
+    private List<Object> indexedKey(SeedInfo info, List<RequestInfo.Field> keyFields, DataRow data) {
+        List<Object> values = new ArrayList<>(keyFields.size());
+        for (RequestInfo.Field field : keyFields) {
+            Object value = data.values().get(field.pos());
+            if ((value instanceof String stringValue) && stringValue.startsWith(SQLGenerator.DIRECT_VALUE_SIGN)) {
+                return null;
+            }
+            values.add(value);
+        }
+        return Arrays.asList(requestDataTypefication(info, keyFields, values));
+    }
+
+    /**
+     * Load keys of all table rows.
+     *
+     * @param info      source info
+     * @param generator SQL generator
+     * @return index with table keys
+     */
+    private KeyIndex loadKeys(SeedInfo info, SQLGenerator generator) {
+        String sql = generator.selectKeys(info);
+        LOG.trace("Load keys: {}", sql);
+        try {
+            boolean[] padded = paddedFlags(info, info.getKeys().keySet());
+            KeyIndex result = STREAM_SQL.query(settings.connection(), sql, rs -> {
+                KeyIndex index = new KeyIndex(padded);
+                int columns = rs.getMetaData().getColumnCount();
+                while (rs.next()) {
+                    List<Object> key = new ArrayList<>(columns);
+                    for (int col = 1; col <= columns; col++) {
+                        key.add(rs.getObject(col));
+                    }
+                    index.add(key);
+                }
+                return index;
+            });
+            LOG.debug("Loaded [{}] keys from table [{}]", result.size(), info.getTableName());
+            return result;
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Load current values of table rows, up to {@link DBSSettings#skipUnchangedLimit()} rows.
+     *
+     * @param info        source info
+     * @param generator   SQL generator
+     * @param valueFields non-key fields
+     * @return current rows by keys
+     */
+    private RowSnapshot loadRows(SeedInfo info, SQLGenerator generator, List<RequestInfo.Field> valueFields) {
+        String sql = generator.selectRows(info);
+        LOG.trace("Load rows: {}", sql);
+        try {
+            boolean[] keyPadded = paddedFlags(info, info.getKeys().keySet());
+            boolean[] padded = paddedFlags(info, valueFields.stream().map(RequestInfo.Field::name).toList());
+            RowSnapshot result = STREAM_SQL.query(settings.connection(), sql, rs -> {
+                RowSnapshot snapshot = new RowSnapshot(keyPadded, padded);
+                int limit = settings.skipUnchangedLimit();
+                while (rs.next()) {
+                    if ((limit > 0) && (snapshot.size() >= limit)) {
+                        LOG.debug("Only [{}] rows of table [{}] are loaded, other rows are updated without comparison",
+                                limit, info.getTableName());
+                        break;
+                    }
+                    List<Object> key = new ArrayList<>(keyPadded.length);
+                    for (int col = 1; col <= keyPadded.length; col++) {
+                        key.add(rs.getObject(col));
+                    }
+                    Object[] values = new Object[padded.length];
+                    for (int col = 0; col < padded.length; col++) {
+                        values[col] = rs.getObject(keyPadded.length + col + 1);
+                    }
+                    snapshot.add(key, values);
+                }
+                return snapshot;
+            });
+            LOG.debug("Loaded [{}] rows from table [{}]", result.size(), info.getTableName());
+            return result;
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Non-key fields of source.
+     *
+     * @param info source info
+     * @return fields in order of {@link SeedInfo#getFields()}
+     */
+    private static List<RequestInfo.Field> valueFields(SeedInfo info) {
+        List<RequestInfo.Field> result = new ArrayList<>();
+        info.getFields().forEach((name, fieldInfo) -> {
+            if (!info.getKeys().containsKey(name)) {
+                result.add(new RequestInfo.Field(name, fieldInfo.index));
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Fields of row, which differ from current values of the row.
+     * <p>
+     * Current values are replaced by new ones, so the next row with the same keys is compared with them.
+     *
+     * @param info        source info
+     * @param snapshot    current rows
+     * @param keyFields   key fields
+     * @param valueFields non-key fields
+     * @param data        row
+     * @return names of changed fields or null if row isn't in snapshot
+     */
+    private List<String> changedFields(SeedInfo info, RowSnapshot snapshot, List<RequestInfo.Field> keyFields,
+            List<RequestInfo.Field> valueFields, DataRow data) {
+        List<Object> key = indexedKey(info, keyFields, data);
+        Object[] current = key != null ? snapshot.get(key) : null;
+        if (current == null) {
+            return null;
+        }
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < valueFields.size(); i++) {
+            RequestInfo.Field field = valueFields.get(i);
+            Object value = data.values().get(field.pos());
+            if ((value == null) && info.ignoreOmits()) {
+                continue;
+            }
+            if ((value instanceof String stringValue) && stringValue.startsWith(SQLGenerator.DIRECT_VALUE_SIGN)) {
+                result.add(field.name());
+                RowSnapshot.setUnknown(current, i);
+                continue;
+            }
+            Object converted = requestDataTypefication(info, List.of(field), Collections.singletonList(value))[0];
+            if (!snapshot.isSame(current, i, converted)) {
+                result.add(field.name());
+                current[i] = converted;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Blank-padded (CHAR) flags of fields, as they are selected by {@link SQLGenerator#selectRows(SeedInfo)}.
+     *
+     * @param info   source info
+     * @param fields field names
+     * @return flags in order of fields
+     * @throws SQLException on metadata error
+     */
+    private boolean[] paddedFlags(SeedInfo info, Collection<String> fields) throws SQLException {
+        Map<String, TableInfo> tableMap = session.getTables();
+        Map<String, ColumnInfo> columns = tableMap.get(info.getTableName().toLowerCase(Locale.ROOT)).getFields();
+        boolean[] result = new boolean[fields.size()];
+        int i = 0;
+        for (String name : fields) {
+            String fieldName = name.toLowerCase(Locale.ROOT);
+            ColumnInfo field = columns.get(fieldName);
+            ReferenceInfo ref = info.getReferences().get(fieldName);
+            if ((ref != null) && !settings.referenceCache()) {
+                field = referencedField(tableMap, ref);
+            }
+            result[i++] = isPadded(field);
+        }
+        return result;
+    }
+
+    private static boolean isPadded(ColumnInfo field) {
+        return (field != null) && ((field.type() == Types.CHAR) || (field.type() == Types.NCHAR));
+    }
+
+    /**
+     * Referenced column of single-column reference.
+     *
+     * @param tableMap DB tables
+     * @param ref      reference
+     * @return referenced column or null for multi-column reference
+     * @throws SQLException on metadata error
+     */
+    private ColumnInfo referencedField(Map<String, TableInfo> tableMap, ReferenceInfo ref) throws SQLException {
+        if (ref.getTableColumn().size() != 1) {
+            return null;
+        }
+        TableInfo refTable = tableMap.get(ref.getTableName().toLowerCase(Locale.ROOT));
+        return refTable.getFields().get(ref.getTableColumn().get(0).toLowerCase(Locale.ROOT));
+    }
+
+    private void loadReference(ReferenceInfo ref, boolean reload) {
+        if (!reload && referenceCache.isLoaded(ref)) {
+            return;
+        }
+        try {
+            boolean padded = isPadded(referencedField(session.getTables(), ref));
+            referenceCache.load(settings.connection(), ref, session.getGenerator().selectReference(ref),
+                    padded);
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Find key of referenced row via reference cache.
+     * <p>
+     * Self-referenced table is reloaded once when value isn't found, because referenced row can be inserted by
+     * previous rows of the same source.
+     *
+     * @param info  source info
+     * @param ref   reference
+     * @param value converted value of referenced column(s)
+     * @return key of referenced row
+     */
+    private Object resolveReference(SeedInfo info, ReferenceInfo ref, Object value) {
+        if (value == null) {
+            return null;
+        }
+        loadReference(ref, false);
+        Object key = referenceCache.find(ref, value);
+        if ((key == null) && ref.getTableName().equalsIgnoreCase(info.getTableName())) {
+            loadReference(ref, true);
+            key = referenceCache.find(ref, value);
+        }
+        if (key == null) {
+            throw new RuntimeException("Value [%s] not found in referenced table [%s], column(s) %s"
+                    .formatted(value, ref.getTableName(), ref.getTableColumn()));
+        }
+        return key;
+    }
+
+    /**
+     * Check all references of source via reference cache before writing.
+     * <p>
+     * All missed values are reported at once. Check is skipped for tables with listeners, which can change row data,
+     * and for self-references.
+     *
+     * @param info source info
+     */
+    private void checkReferences(SeedInfo info) {
+        if (hasEvent(settings.onRow(), info) || hasEvent(settings.onInsert(), info)
+                || hasEvent(settings.onUpdate(), info)) {
+            // values can be changed by listeners, so they are checked on writing of every row
+            LOG.debug("References of [{}] aren't checked before writing because of listeners",
+                    info.getResourceName());
+            return;
+        }
+        List<String> errors = new ArrayList<>();
+        try {
+            Map<String, TableInfo> tableMap = session.getTables();
+            for (Map.Entry<String, ReferenceInfo> entry : info.getReferences().entrySet()) {
+                ReferenceInfo ref = entry.getValue();
+                SeedInfo.FieldInfo fieldInfo = info.getFields().get(entry.getKey());
+                if ((fieldInfo == null) || ref.getTableName().equalsIgnoreCase(info.getTableName())) {
+                    continue;
+                }
+                RequestInfo.Field dataField = new RequestInfo.Field(entry.getKey(), fieldInfo.index);
+                loadReference(ref, false);
+                try (RowCursor rows = info.openRows()) {
+                    for (DataRow data : rows) {
+                        Object value = data.values().get(fieldInfo.index);
+                        if ((value == null) || ((value instanceof String stringValue)
+                                && stringValue.startsWith(SQLGenerator.DIRECT_VALUE_SIGN))) {
+                            continue;
+                        }
+                        Object refValue = convertReference(tableMap, ref, value, dataField);
+                        if (referenceCache.find(ref, refValue) == null) {
+                            errors.add("line [%s]: value [%s] not found in referenced table [%s], column(s) %s"
+                                    .formatted(data.sourceNumber(), value, ref.getTableName(), ref.getTableColumn()));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+        if (!errors.isEmpty()) {
+            throw new RuntimeException("Unresolved references in file [%s]:%n%s"
+                    .formatted(info.getResourceName(), String.join(System.lineSeparator(), errors)));
+        }
+    }
+
+    private int countRows(SeedInfo info) throws SQLException {
+        Number count = SQL.query(settings.connection(), "SELECT COUNT(*) FROM %s".formatted(info.getTableName()),
+                new ScalarHandler<>());
+        return count.intValue();
+    }
+
+    /**
+     * Can rows of given seed be written via native upsert?
+     *
+     * @param info source info
+     * @return true if upsert can be used
+     * @throws SQLException on metadata error
+     */
+    private boolean isUpsertable(SeedInfo info) throws SQLException {
+        if (!settings.nativeUpsert() || settings.skipUnchanged() || (info.getAction() != ActionType.MODIFY)
+                || !database.hasUpsert()) {
+            return false;
+        }
+        if (((info.getExtraCondition() != null) && !info.getExtraCondition().isEmpty()) || info.ignoreOmits()) {
+            return false;
+        }
+        if (hasEvent(settings.onInsert(), info) || hasEvent(settings.onUpdate(), info)
+                || hasEvent(settings.onAfterInsert(), info)) {
+            return false;
+        }
+        boolean result = isUniqueKey(info);
+        if (!result) {
+            LOG.debug("Keys of [{}] don't match unique constraint, upsert isn't used", info.getTableName());
+        }
+        return result;
+    }
+
+    /**
+     * Do keys of source match primary key or unique index of table?
+     *
+     * @param info source info
+     * @return true if keys are unique
+     * @throws SQLException on metadata error
+     */
+    private boolean isUniqueKey(SeedInfo info) throws SQLException {
+        String cacheKey = info.getTableName().toLowerCase(Locale.ROOT) + ':' + info.getKeys().keySet();
+        Boolean cached = session.getUniqueKeys().get(cacheKey);
+        if (cached == null) {
+            cached = loadUniqueKey(info);
+            session.getUniqueKeys().put(cacheKey, cached);
+        }
+        return cached;
+    }
+
+    private boolean loadUniqueKey(SeedInfo info) throws SQLException {
+        TableInfo table = session.getTables().get(info.getTableName().toLowerCase(Locale.ROOT));
+        Set<String> keys = new HashSet<>();
+        info.getKeys().keySet().forEach(it -> keys.add(it.toLowerCase(Locale.ROOT)));
+        Set<String> primaryKey = new HashSet<>();
+        table.getKeys().forEach(it -> primaryKey.add(it.toLowerCase(Locale.ROOT)));
+        if (keys.equals(primaryKey)) {
+            return true;
+        }
+        Map<String, Set<String>> indexes = new HashMap<>();
+        try (ResultSet rs = settings.connection().getMetaData()
+                .getIndexInfo(table.getCatalog(), table.getSchema(), table.getName(), true, true)) {
+            while (rs.next()) {
+                String index = rs.getString("INDEX_NAME");
+                String column = rs.getString("COLUMN_NAME");
+                // partial index can't be used for conflict detection
+                if ((index == null) || (column == null) || (rs.getString("FILTER_CONDITION") != null)) {
+                    continue;
+                }
+                indexes.computeIfAbsent(index, it -> new HashSet<>()).add(column.toLowerCase(Locale.ROOT));
+            }
+        }
+        return indexes.containsValue(keys);
+    }
+
+    /**
+     * Can rows of given seed be written into empty table via bulk load?
+     * <p>
+     * Bulk load isn't used for rows with direct values, for self-referenced tables, for tables with ignored omits
+     * (omitted values must be filled by defaults) and for tables with listeners, which can change rows or need result
+     * of every insert.
+     *
+     * @param info source info
+     * @return true if bulk load can be used
+     */
+    private boolean isBulkLoadable(SeedInfo info) {
+        if (!settings.bulkLoad() || !database.hasBulkLoad() || info.ignoreOmits()) {
+            return false;
+        }
+        if (hasEvent(settings.onRow(), info) || hasEvent(settings.onInsert(), info)
+                || hasEvent(settings.onAfterInsert(), info)) {
+            return false;
+        }
+        for (ReferenceInfo ref : info.getReferences().values()) {
+            if (ref.getTableName().equalsIgnoreCase(info.getTableName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Can row be written via bulk load?
+     *
+     * @param data row
+     * @return false if row has direct or streamed external values
+     */
+    private boolean isBulkLoadable(DataRow data) {
+        for (Object value : data.values()) {
+            if (((value instanceof String stringValue)
+                    && stringValue.startsWith(SQLGenerator.DIRECT_VALUE_SIGN)) || isStreamed(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Result of bulk load.
+     *
+     * @param loaded     number of loaded rows
+     * @param isComplete are all rows loaded
+     */
+    private record BulkLoadResult(int loaded, boolean isComplete) {
+    }
+
+    /**
+     * Write rows via bulk load.
+     * <p>
+     * References are resolved via reference cache. Without {@link DBSSettings#referenceCache()} value, not found in
+     * referenced table, is written as NULL, like subselect in insert does. Loading stops at the first row, which can't
+     * be loaded (see {@link #isBulkLoadable(DataRow)}), the rest rows are written by inserts then.
+     *
+     * @param info source info
+     * @return number of loaded rows and are all rows loaded
+     * @throws SQLException on load error
+     */
+    private BulkLoadResult bulkLoad(SeedInfo info) throws SQLException {
+        List<RequestInfo.Field> fields = new ArrayList<>(info.getFields().size());
+        info.getFields().forEach((name, fieldInfo) -> fields.add(new RequestInfo.Field(name, fieldInfo.index)));
+        List<String> columns = fields.stream().map(RequestInfo.Field::name).toList();
+        ReferenceInfo[] refs = new ReferenceInfo[fields.size()];
+        for (int i = 0; i < refs.length; i++) {
+            ReferenceInfo ref = info.getReferences().get(fields.get(i).name().toLowerCase(Locale.ROOT));
+            refs[i] = settings.referenceCache() ? null : ref;
+        }
+        AtomicBoolean isComplete = new AtomicBoolean(true);
+        try (RowCursor cursor = info.openRows()) {
+            Iterable<Object[]> rows = () -> StreamSupport.stream(cursor.spliterator(), false).takeWhile(data -> {
+                if (isBulkLoadable(data)) {
+                    return true;
+                }
+                isComplete.set(false);
+                return false;
+            }).map(data -> {
+                try {
+                    Object[] result = convertRow(info, fields, data);
+                    for (int i = 0; i < result.length; i++) {
+                        if ((refs[i] != null) && (result[i] != null)) {
+                            loadReference(refs[i], false);
+                            result[i] = referenceCache.find(refs[i], result[i]);
+                        }
+                    }
+                    return result;
+                } catch (RuntimeException e) {
+                    LOG.error("Error on file [{}], line [{}]: {}", info.getResourceName(), data.sourceNumber(),
+                            e.getMessage(), e);
+                    throw e;
+                }
+            }).iterator();
+            long loaded = database.bulkLoad(info.getTableName(), columns, rows);
+            LOG.debug("Loaded [{}] rows into table [{}]", loaded, info.getTableName());
+            return new BulkLoadResult((int) loaded, isComplete.get());
+        }
+    }
+
     @Override
     public Pair<Integer, Integer> write(SeedInfo info) {
+        session.getExternalValues().prefetch(info);
+        try {
+            Pair<Integer, Integer> result = writeTable(info);
+            if ((settings.commitMode() == CommitMode.TABLE) || (settings.commitMode() == CommitMode.ROWS)) {
+                commit();
+            }
+            return result;
+        } finally {
+            converters.remove(info);
+            referenceCache.invalidate(info.getTableName());
+        }
+    }
+
+    /**
+     * Commit written data, when connection isn't in auto-commit mode.
+     */
+    private void commit() {
+        try {
+            if (!settings.connection().getAutoCommit()) {
+                LOG.trace("Commit");
+                settings.connection().commit();
+            }
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    protected DBSSettings getSettings() {
+        return settings;
+    }
+
+    protected Database getDatabase() {
+        return database;
+    }
+
+    protected List<SeedInfo> getInfos() {
+        return session.getInfos();
+    }
+
+    protected SeedSession getSession() {
+        return session;
+    }
+
+    /**
+     * Write all rows of seed by set-based statements instead of statements for every row.
+     * <p>
+     * Called after seed checking, before row processing. Default implementation doesn't support set-based writing.
+     *
+     * @param info source info
+     * @return number of inserted/updated records or null if rows must be written one by one
+     * @throws SQLException on write error
+     */
+    protected Pair<Integer, Integer> writeSet(SeedInfo info) throws SQLException {
+        return null;
+    }
+
+    /**
+     * Convert row values to the DB types.
+     *
+     * @param info   source info
+     * @param fields fields to convert
+     * @param data   row
+     * @return converted values in order of fields
+     */
+    protected Object[] convertRow(SeedInfo info, List<RequestInfo.Field> fields, DataRow data) {
+        List<Object> values = new ArrayList<>(fields.size());
+        fields.forEach(field -> values.add(data.values().get(field.pos())));
+        return requestDataTypefication(info, fields, values);
+    }
+
+    private Pair<Integer, Integer> writeTable(SeedInfo info) {
 //        LOG.info("Process table: [{}], resource: [{}]", info.getTableName(), info.getResourceName());
         onEvent(settings.onStartData(), info);
         checkSeed(info);
@@ -195,10 +802,7 @@ public class DBWriter implements IWriter {
                     onEvent(settings.onEndData(), info);
                     return Pair.of(0, 0);
                 case IGNORE_NOT_EMPTY:
-                    Number count = SQL.query(settings.connection(),
-                            "SELECT COUNT(*) FROM %s".formatted(info.getTableName()),
-                            new ScalarHandler<>());
-                    if (count.intValue() > 0) {
+                    if (countRows(info) > 0) {
                         onEvent(settings.onEndData(), info);
                         return Pair.of(0, 0);
                     }
@@ -206,56 +810,167 @@ public class DBWriter implements IWriter {
                 default:
                     // do nothing
             }
-            SQLGenerator generator = new SQLGenerator(infos, settings);
-            int inserted = 0;
+            if (settings.referenceCache()) {
+                checkReferences(info);
+            }
+            int bulkLoaded = 0;
+            if ((info.getAction() == ActionType.IGNORE_NOT_EMPTY) && isBulkLoadable(info)) {
+                BulkLoadResult bulkResult = bulkLoad(info);
+                if (bulkResult.isComplete()) {
+                    onEvent(settings.onEndData(), info);
+                    return Pair.of(bulkResult.loaded(), 0);
+                }
+                bulkLoaded = bulkResult.loaded();
+                LOG.debug("Rows of [{}] after [{}] loaded rows are inserted", info.getResourceName(), bulkLoaded);
+            }
+            Pair<Integer, Integer> setResult = bulkLoaded == 0 ? writeSet(info) : null;
+            if (setResult != null) {
+                onEvent(settings.onEndData(), info);
+                return setResult;
+            }
+            SQLGenerator generator = session.getGenerator();
+            StatementPlan plan = session.getPlan(info);
+            StatementBatch batch = isBatchable(info)
+                    ? new StatementBatch(statements, settings.batchSize())
+                    : null;
+            boolean batchInserts = (batch != null) && isInsertBatchable(info);
+            boolean isUpsert = isUpsertable(info);
+            List<RequestInfo.Field> keyFields = keyFields(info);
+            KeyIndex keyIndex = null;
+            if ((settings.existenceCheck() == ExistenceCheck.PREFETCH)
+                    && (info.getAction() != ActionType.IGNORE_NOT_EMPTY) && !isUpsert) {
+                keyIndex = loadKeys(info, generator);
+            }
+            List<RequestInfo.Field> valueFields = valueFields(info);
+            RowSnapshot snapshot = settings.skipUnchanged() && (info.getAction() == ActionType.MODIFY)
+                    ? loadRows(info, generator, valueFields)
+                    : null;
+            int skipped = 0;
+            int inserted = bulkLoaded;
             int updated = 0;
-            for (DataRow data : info.getData()) {
-                onEvent(settings.onRow(), info, data);
-                try {
-                    boolean recordExists = false;
-                    if (info.getAction() != ActionType.IGNORE_NOT_EMPTY) {
-                        RequestInfo checkData = generator.checkRecord(info, data);
-                        Number records = query(info, checkData);
-                        recordExists = records.intValue() > 0;
+            boolean commitRows = (settings.commitMode() == CommitMode.ROWS) && (settings.commitInterval() > 0);
+            int uncommitted = 0;
+            int toSkip = bulkLoaded;
+            try (RowCursor rows = openPipeline(info)) {
+                for (DataRow data : rows) {
+                    if (toSkip > 0) {
+                        // already written via bulk load
+                        toSkip--;
+                        continue;
                     }
-                    switch (info.getAction()) {
-                        case INSERT:
-                        case IGNORE_NOT_EMPTY:
-                            if (!recordExists) {
-                                onEvent(settings.onInsert(), info, data);
-                                RequestInfo insertData = generator.insert(info, data);
-                                Map<String, Object> insertResult = insert(info, insertData);
-                                if (database.insertHasReturning()) {
-                                    onEvent(settings.onAfterInsert(), info, data, insertResult);
-                                }
-                                inserted++;
-                            }
-                            break;
-                        case MODIFY:
-                            if (!recordExists) {
-                                onEvent(settings.onInsert(), info, data);
-                                RequestInfo insertData = generator.insert(info, data);
-                                Map<String, Object> insertResult = insert(info, insertData);
-                                if (database.insertHasReturning()) {
-                                    onEvent(settings.onAfterInsert(), info, data, insertResult);
-                                }
-                                inserted++;
+                    if (rows instanceof RowPipeline pipeline) {
+                        pipelinedRow = data;
+                        pipelinedValues = pipeline.values();
+                    }
+                    if (commitRows && (uncommitted == settings.commitInterval())) {
+                        if (batch != null) {
+                            batch.flush();
+                        }
+                        commit();
+                        uncommitted = 0;
+                    }
+                    uncommitted++;
+                    onEvent(settings.onRow(), info, data);
+                    try {
+                        if (isUpsert) {
+                            RequestInfo upsertData = plan.upsert(data, database);
+                            if (batch != null) {
+                                batch.addUpdate(upsertData.sql(), requestDataTypefication(info, upsertData),
+                                        keyValues(info, data), data.sourceNumber());
                             } else {
-                                onEvent(settings.onUpdate(), info, data);
-                                RequestInfo updateData = generator.update(info, data);
-                                if (updateData != null) {
-                                    updated += update(info, updateData);
-                                }
+                                updated += update(info, upsertData);
                             }
-                            break;
-                        default:
-                            LOG.warn("Undefined action [{}]", info.getAction());
+                            continue;
+                        }
+                        boolean recordExists = false;
+                        List<Object> indexedKey = keyIndex != null ? indexedKey(info, keyFields, data) : null;
+                        if (indexedKey != null) {
+                            recordExists = keyIndex.contains(indexedKey);
+                        } else if (info.getAction() != ActionType.IGNORE_NOT_EMPTY) {
+                            if ((batch != null) && batch.containsKey(keyValues(info, data))) {
+                                batch.flush();
+                            }
+                            RequestInfo checkData = plan.checkRecord(data);
+                            Number records = query(info, checkData);
+                            recordExists = records.intValue() > 0;
+                        }
+                        switch (info.getAction()) {
+                            case INSERT:
+                            case IGNORE_NOT_EMPTY:
+                            case MODIFY:
+                                if (!recordExists) {
+                                    onEvent(settings.onInsert(), info, data);
+                                    RequestInfo insertData = plan.insert(data);
+                                    if (batchInserts) {
+                                        batch.addInsert(insertData.sql(), requestDataTypefication(info, insertData),
+                                                keyValues(info, data), data.sourceNumber());
+                                    } else {
+                                        if (batch != null) {
+                                            batch.flush();
+                                        }
+                                        Map<String, Object> insertResult = insert(info, insertData);
+                                        if (database.insertHasReturning()) {
+                                            onEvent(settings.onAfterInsert(), info, data, insertResult);
+                                        }
+                                        inserted++;
+                                    }
+                                    List<Object> insertedKey = keyIndex != null
+                                            ? indexedKey(info, keyFields, data)
+                                            : null;
+                                    if (insertedKey != null) {
+                                        keyIndex.add(insertedKey);
+                                    }
+                                } else if (info.getAction() == ActionType.MODIFY) {
+                                    onEvent(settings.onUpdate(), info, data);
+                                    List<String> changed = snapshot != null
+                                            ? changedFields(info, snapshot, keyFields, valueFields, data)
+                                            : null;
+                                    RequestInfo updateData;
+                                    if ((changed == null) || (changed.size() == valueFields.size())) {
+                                        updateData = plan.update(data);
+                                    } else if (changed.isEmpty()) {
+                                        skipped++;
+                                        updateData = null;
+                                    } else {
+                                        updateData = generator.update(info, data, changed);
+                                    }
+                                    if ((updateData != null) && (batch != null)) {
+                                        batch.addUpdate(updateData.sql(), requestDataTypefication(info, updateData),
+                                                keyValues(info, data), data.sourceNumber());
+                                    } else if (updateData != null) {
+                                        updated += update(info, updateData);
+                                    }
+                                }
+                                break;
+                            default:
+                                LOG.warn("Undefined action [{}]", info.getAction());
+                        }
+                    } catch (Throwable e) {
+                        LOG.error("Error on file [{}], line [{}]: {}", info.getResourceName(), data.sourceNumber(),
+                                e.getMessage(), e);
+                        throw e;
                     }
-                } catch (Throwable e) {
-                    LOG.error("Error on file [{}], line [{}]: {}", info.getResourceName(), data.sourceNumber(),
-                            e.getMessage(), e);
+                }
+            } finally {
+                pipelinedRow = null;
+                pipelinedValues = null;
+            }
+            if (batch != null) {
+                try {
+                    batch.flush();
+                } catch (RuntimeException e) {
+                    LOG.error("Error on file [{}]: {}", info.getResourceName(), e.getMessage(), e);
                     throw e;
                 }
+                inserted += batch.inserted();
+                updated += batch.updated();
+            }
+            if (skipped > 0) {
+                LOG.debug("Skipped [{}] unchanged rows of table [{}]", skipped, info.getTableName());
+            }
+            if (isUpsert) {
+                // upsert doesn't report whether row was inserted or updated, all rows are counted as updated
+                LOG.debug("Upserted [{}] rows of table [{}]", updated, info.getTableName());
             }
             onEvent(settings.onEndData(), info);
             return Pair.of(inserted, updated);
@@ -264,6 +979,17 @@ public class DBWriter implements IWriter {
         }
     }
 
+    /**
+     * Close cached statements.
+     */
+    @Override
+    public void close() {
+        statements.close();
+        if (ownSession) {
+            session.close();
+        }
+    }
+
     @SuppressWarnings("TypeParameterUnusedInFormals")
     private <T> T query(SeedInfo info, RequestInfo requestData) {
         Object[] data = requestDataTypefication(info, requestData);
@@ -271,7 +997,7 @@ public class DBWriter implements IWriter {
             LOG.trace("{} -> {}", requestData.sql(), Arrays.toString(data));
         }
         try {
-            return SQL.query(settings.connection(), requestData.sql(), new ScalarHandler<>(), data);
+            return statements.query(requestData.sql(), new ScalarHandler<>(), data);
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
         }
@@ -283,7 +1009,7 @@ public class DBWriter implements IWriter {
             LOG.trace("{} -> {}", requestData.sql(), Arrays.toString(data));
         }
         try {
-            return SQL.insert(settings.connection(), requestData.sql(), insertHandler, data);
+            return statements.insert(requestData.sql(), insertHandler, data);
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
         }
@@ -295,71 +1021,146 @@ public class DBWriter implements IWriter {
             LOG.trace("{} -> {}", requestData.sql(), Arrays.toString(data));
         }
         try {
-            return SQL.execute(settings.connection(), requestData.sql(), data);
+            return statements.update(requestData.sql(), data);
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
         }
     }
 
     private Object[] requestDataTypefication(SeedInfo info, RequestInfo requestData) {
-        List<Object> data = new ArrayList<>();
-        try {
-            Map<String, TableInfo> tableMap = dbInfo.getTablesAsMap();
-            TableInfo table = tableMap.get(info.getTableName().toLowerCase(Locale.ROOT));
-            Map<String, ColumnInfo> fields = table.getFields();
-            for (int i = 0; i < requestData.fields().size(); i++) {
-                RequestInfo.Field dataField = requestData.fields().get(i);
-                String fieldName = dataField.name().toLowerCase(Locale.ROOT);
-                ColumnInfo field = fields.get(fieldName);
-                Object objectItem = requestData.data().get(i);
-                Object dataItem;
-                if (info.getReferences().containsKey(fieldName)) {
-                    ReferenceInfo ref = info.getReferences().get(fieldName);
-                    TableInfo refTable = tableMap.get(ref.getTableName().toLowerCase(Locale.ROOT));
-                    if (ref.getTableColumn().size() == 1) {
-                        field = refTable.getFields().get(ref.getTableColumn().get(0).toLowerCase(Locale.ROOT));
-                        dataItem = raw2object(objectItem, field, dataField);
-                    } else {
-                        dataItem = objectItem;
+        return requestDataTypefication(info, requestData.fields(), requestData.data());
+    }
+
+    private Object[] requestDataTypefication(SeedInfo info, List<RequestInfo.Field> dataFields,
+            List<Object> values) {
+        ValueConverter[] columnConverters = converters.computeIfAbsent(info, this::compileConverters);
+        Object[] data = new Object[dataFields.size()];
+        for (int i = 0; i < data.length; i++) {
+            int pos = dataFields.get(i).pos();
+            Object value = values.get(i);
+            // value of pipelined row is converted already, unless it's changed by listener
+            if ((pipelinedValues != null) && (pipelinedValues[pos] != NOT_CONVERTED)
+                    && (value == pipelinedRow.values().get(pos))) {
+                data[i] = pipelinedValues[pos];
+            } else {
+                data[i] = columnConverters[pos].convert(value);
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Open rows of source for writing.
+     * <p>
+     * With {@link DBSSettings#pipelineCapacity()} rows are read and their values (except references, arrays and
+     * direct values) are converted by background stages of {@link RowPipeline}. Value, which conversion is failed,
+     * is converted again by writer, so error is reported with line of source as usual.
+     *
+     * @param info source info
+     * @return cursor over rows
+     */
+    private RowCursor openPipeline(SeedInfo info) {
+        if (settings.pipelineCapacity() < 1) {
+            return info.openRows();
+        }
+        ValueConverter[] columnConverters = converters.computeIfAbsent(info, this::compileConverters);
+        boolean[] convertible = new boolean[columnConverters.length];
+        info.getFields().forEach((name, fieldInfo) -> convertible[fieldInfo.index] = !info.getReferences()
+                .containsKey(name.toLowerCase(Locale.ROOT)));
+        return new RowPipeline(info, settings.pipelineCapacity(), data -> {
+            Object[] result = new Object[convertible.length];
+            for (int pos = 0; pos < result.length; pos++) {
+                result[pos] = NOT_CONVERTED;
+                Object value = pos < data.values().size() ? data.values().get(pos) : null;
+                if (convertible[pos] && (value instanceof String stringValue)
+                        && !stringValue.startsWith(SQLGenerator.DIRECT_VALUE_SIGN)) {
+                    try {
+                        result[pos] = columnConverters[pos].convert(value);
+                    } catch (RuntimeException ex) {
+                        LOG.trace("Value [{}] isn't converted by pipeline: {}", value, ex.getMessage());
                     }
+                }
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Resolve columns of source fields once per table.
+     *
+     * @param info source info
+     * @return converters, indexed by field position
+     */
+    private ValueConverter[] compileConverters(SeedInfo info) {
+        try {
+            Map<String, TableInfo> tableMap = session.getTables();
+            Map<String, ColumnInfo> fields = tableMap.get(info.getTableName().toLowerCase(Locale.ROOT)).getFields();
+            int size = 0;
+            for (SeedInfo.FieldInfo fieldInfo : info.getFields().values()) {
+                size = Math.max(size, fieldInfo.index + 1);
+            }
+            ValueConverter[] result = new ValueConverter[size];
+            for (Map.Entry<String, SeedInfo.FieldInfo> entry : info.getFields().entrySet()) {
+                String fieldName = entry.getKey().toLowerCase(Locale.ROOT);
+                RequestInfo.Field dataField = new RequestInfo.Field(entry.getKey(), entry.getValue().index);
+                ReferenceInfo ref = info.getReferences().get(fieldName);
+                if (ref != null) {
+                    ColumnInfo refField = referencedField(tableMap, ref);
+                    boolean isCached = settings.referenceCache();
+                    result[dataField.pos()] = value -> {
+                        Object dataItem = refField != null ? raw2object(value, refField, dataField) : value;
+                        return isCached ? resolveReference(info, ref, dataItem) : dataItem;
+                    };
                 } else {
-                    dataItem = raw2object(objectItem, field, dataField);
+                    ColumnInfo field = fields.get(fieldName);
+                    result[dataField.pos()] = value -> raw2object(value, field, dataField);
                 }
-                data.add(dataItem);
             }
-            return data.toArray(Object[]::new);
+            return result;
         } catch (SQLException ex) {
             throw new RuntimeException(ex);
         }
+    }
 
+    private Object convertReference(Map<String, TableInfo> tableMap, ReferenceInfo ref, Object objectItem,
+            RequestInfo.Field dataField) throws SQLException {
+        ColumnInfo field = referencedField(tableMap, ref);
+        return field != null ? raw2object(objectItem, field, dataField) : objectItem;
     }
 
     private String checkExternal(String item) {
-        if (!item.startsWith(settings.externalValueRef())) {
-            return item;
-        }
-        String fileName = item.substring(settings.externalValueRef().length());
-        String srcDir = settings.sourceDir().endsWith("/") ? settings.sourceDir() : settings.sourceDir() + "/";
-        File dir = new File(srcDir);
-        boolean isExternalResource = dir.exists();
-        if (isExternalResource) {
-            Path path = new File(srcDir + fileName).toPath();
-            try {
-                return Files.readString(path);
-            } catch (IOException ex) {
-                throw new RuntimeException(ex);
-            }
-        } else {
-            ClassLoader classLoader = settings.classLoader() != null
-                    ? settings.classLoader()
-                    : getClass().getClassLoader();
-            try (InputStream stream = classLoader.getResourceAsStream(srcDir + fileName)) {
-                return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
-            } catch (Exception ex) {
-                LOG.error("Error on reading resource: [{}]", srcDir + fileName);
-                throw new RuntimeException(ex);
-            }
+        return session.getExternalValues().get(item);
+    }
+
+    /**
+     * Is value an external value, which is bound as stream?
+     *
+     * @param value raw value
+     * @return true if value is streamed
+     */
+    protected boolean isStreamed(Object value) {
+        return settings.streamExternalValues() && (value instanceof String stringValue)
+                && stringValue.startsWith(settings.externalValueRef());
+    }
+
+    /**
+     * Decode value of binary column.
+     * <p>
+     * Value can be hex with prefix <b>\x</b> (e.g. <code>\x0aff</code>), base64 with prefix <b>base64:</b> (e.g.
+     * <code>base64:Cv8=</code>) or binary digits (e.g. <code>101011111111</code>).
+     *
+     * @param value string value
+     * @return bytes
+     */
+    static byte[] decodeBinary(String value) {
+        if (value.startsWith(HEX_PREFIX)) {
+            return HexFormat.of().parseHex(value, HEX_PREFIX.length(), value.length());
         }
+        if (value.startsWith(BASE64_PREFIX)) {
+            return Base64.getMimeDecoder()
+                    .decode(value.substring(BASE64_PREFIX.length()).getBytes(StandardCharsets.ISO_8859_1));
+        }
+        return new BigInteger(value, 2).toByteArray();
     }
 
     protected Object raw2object(Object objectItem, int fieldType, String fieldTypeName) {
@@ -368,6 +1169,18 @@ public class DBWriter implements IWriter {
             return null;
         }
         if (objectItem instanceof String stringItem) {
+            if (isStreamed(stringItem)) {
+                switch (fieldType) {
+                    case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB:
+                        return session.getExternalValues().stream(stringItem, true);
+                    case Types.CLOB, Types.NCLOB, Types.LONGVARCHAR, Types.LONGNVARCHAR:
+                        return session.getExternalValues().stream(stringItem, false);
+                    default:
+                        if (DBUtils.isStringField(fieldType)) {
+                            return session.getExternalValues().stream(stringItem, false);
+                        }
+                }
+            }
             if (DBUtils.isStringField(fieldType)) {
                 dataItem = checkExternal(stringItem);
             } else {
@@ -387,7 +1200,10 @@ public class DBWriter implements IWriter {
                     case Types.TIMESTAMP_WITH_TIMEZONE,
                             Types.TIME_WITH_TIMEZONE ->
                         ZonedDateTime.parse(stringItem);
-                    case Types.BINARY, Types.VARBINARY -> new BigInteger(stringItem, 2).toByteArray();
+                    case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY, Types.BLOB ->
+                        stringItem.startsWith(settings.externalValueRef())
+                                ? session.getExternalValues().getBytes(stringItem)
+                                : decodeBinary(stringItem);
                     case Types.OTHER -> database.valueFromString(fieldTypeName, stringItem);
                     case Types.ARRAY -> throw new RuntimeException("Unreachable case");
                     default -> checkExternal(stringItem);
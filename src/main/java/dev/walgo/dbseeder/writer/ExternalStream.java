@@ -0,0 +1,82 @@
+package dev.walgo.dbseeder.writer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+
+/**
+ * External value (<b>@@</b>file), which is passed to driver as stream instead of value in memory.
+ *
+ * @param path        file path or resource name
+ * @param isFile      is value a file (otherwise a resource of class loader)
+ * @param binary      is value bound to binary column (otherwise to character column)
+ * @param classLoader class loader of resource
+ */
+record ExternalStream(String path, boolean isFile, boolean binary, ClassLoader classLoader) {
+
+    private InputStream open() throws IOException {
+        if (isFile) {
+            return Files.newInputStream(Path.of(path));
+        }
+        InputStream stream = classLoader.getResourceAsStream(path);
+        if (stream == null) {
+            throw new IOException("Resource [%s] isn't found".formatted(path));
+        }
+        return stream;
+    }
+
+    /**
+     * Bind value to statement parameter.
+     * <p>
+     * Binary values of files are bound with their size. Value is read into memory only when driver doesn't support
+     * streams.
+     *
+     * @param stmt statement
+     * @param idx  parameter index
+     * @return opened stream, which must be closed after statement execution
+     * @throws SQLException on bind error
+     */
+    Closeable bind(PreparedStatement stmt, int idx) throws SQLException {
+        try {
+            InputStream stream = open();
+            try {
+                if (binary) {
+                    if (isFile) {
+                        stmt.setBinaryStream(idx, stream, Files.size(Path.of(path)));
+                    } else {
+                        stmt.setBinaryStream(idx, stream);
+                    }
+                } else {
+                    stmt.setCharacterStream(idx, new BufferedReader(new InputStreamReader(stream,
+                            StandardCharsets.UTF_8)));
+                }
+                return stream;
+            } catch (SQLFeatureNotSupportedException ex) {
+                try (stream) {
+                    byte[] value = stream.readAllBytes();
+                    if (binary) {
+                        stmt.setBytes(idx, value);
+                    } else {
+                        stmt.setString(idx, new String(value, StandardCharsets.UTF_8));
+                    }
+                }
+                return () -> {
+                };
+            } catch (SQLException | RuntimeException ex) {
+                stream.close();
+                throw ex;
+            }
+        } catch (IOException ex) {
+            throw new SQLException("Can't read external value [%s]".formatted(path), ex);
+        }
+    }
+
+}
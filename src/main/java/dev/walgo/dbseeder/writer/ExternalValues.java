@@ -0,0 +1,255 @@
+package dev.walgo.dbseeder.writer;
+
+import dev.walgo.dbseeder.DBSSettings;
+import dev.walgo.dbseeder.data.DataRow;
+import dev.walgo.dbseeder.data.SeedInfo;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loader of external values (<b>@@</b>file).
+ * <p>
+ * When {@link DBSSettings#externalCacheSize()} is set, loaded values are kept in LRU cache, bounded by total size of
+ * values, and files referenced by table rows are prefetched in background before rows are written. Loader is
+ * thread-safe.
+ */
+class ExternalValues implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ExternalValues.class);
+
+    private final DBSSettings settings;
+    private final String srcDir;
+    private final boolean isExternalResource;
+    private final long capacity;
+    private final LinkedHashMap<String, String> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, CompletableFuture<String>> loading = new HashMap<>();
+    private long size;
+    private ExecutorService prefetcher;
+
+    ExternalValues(DBSSettings settings) {
+        this.settings = settings;
+        this.srcDir = settings.sourceDir().endsWith("/") ? settings.sourceDir() : settings.sourceDir() + "/";
+        this.isExternalResource = new File(srcDir).exists();
+        this.capacity = settings.externalCacheSize();
+    }
+
+    /**
+     * Value of item.
+     *
+     * @param item raw value
+     * @return content of external file, when item is reference to it, otherwise item itself
+     */
+    String get(String item) {
+        if (!item.startsWith(settings.externalValueRef())) {
+            return item;
+        }
+        String path = srcDir + item.substring(settings.externalValueRef().length());
+        if (capacity <= 0) {
+            return read(path);
+        }
+        CompletableFuture<String> future;
+        synchronized (this) {
+            String value = cache.get(path);
+            if (value != null) {
+                return value;
+            }
+            future = loading.get(path);
+        }
+        if (future != null) {
+            try {
+                return future.join();
+            } catch (CompletionException ex) {
+                // prefetch is failed, so report error of reading
+                LOG.trace("Prefetch of [{}] is failed", path, ex);
+            }
+        }
+        String value = read(path);
+        put(path, value);
+        return value;
+    }
+
+    /**
+     * Content of external file as is, for binary column.
+     * <p>
+     * Content isn't decoded, so it isn't cached with values of character columns.
+     *
+     * @param item reference to external file
+     * @return bytes of file
+     */
+    byte[] getBytes(String item) {
+        return readBytes(srcDir + item.substring(settings.externalValueRef().length()));
+    }
+
+    /**
+     * Stream of external value.
+     *
+     * @param item   reference to external file
+     * @param binary is value bound to binary column
+     * @return value, which is read by driver on statement execution
+     */
+    ExternalStream stream(String item, boolean binary) {
+        String path = srcDir + item.substring(settings.externalValueRef().length());
+        return new ExternalStream(path, isExternalResource, binary,
+                settings.classLoader() != null ? settings.classLoader() : getClass().getClassLoader());
+    }
+
+    /**
+     * Start background loading of external files, referenced by rows of table.
+     * <p>
+     * Files are loaded in order of rows while their total size doesn't exceed cache size, so rows are scanned only
+     * until cache is filled. Only rows kept in memory are scanned: streamed rows ({@link DBSSettings#streamRows()})
+     * would be read from source one more time, so their files are loaded on writing.
+     *
+     * @param info source info
+     */
+    void prefetch(SeedInfo info) {
+        if (capacity <= 0) {
+            return;
+        }
+        Set<String> paths = new LinkedHashSet<>();
+        long total = 0;
+        scan:
+        for (DataRow data : info.getData()) {
+            for (Object value : data.values()) {
+                List<?> items = value instanceof List<?> list ? list : Collections.singletonList(value);
+                for (Object item : items) {
+                    String path = externalPath(item);
+                    if ((path == null) || paths.contains(path)) {
+                        continue;
+                    }
+                    total += estimateSize(path);
+                    if (total > capacity) {
+                        break scan;
+                    }
+                    paths.add(path);
+                }
+            }
+        }
+        for (String path : paths) {
+            synchronized (this) {
+                if (cache.containsKey(path) || loading.containsKey(path)) {
+                    continue;
+                }
+                CompletableFuture<String> future = new CompletableFuture<>();
+                loading.put(path, future);
+                getPrefetcher().execute(() -> {
+                    try {
+                        String value = read(path);
+                        put(path, value);
+                        future.complete(value);
+                    } catch (RuntimeException ex) {
+                        future.completeExceptionally(ex);
+                    } finally {
+                        synchronized (this) {
+                            loading.remove(path);
+                        }
+                    }
+                });
+            }
+        }
+    }
+
+    private String externalPath(Object value) {
+        if ((value instanceof String stringValue) && stringValue.startsWith(settings.externalValueRef())) {
+            return srcDir + stringValue.substring(settings.externalValueRef().length());
+        }
+        return null;
+    }
+
+    private long estimateSize(String path) {
+        if (!isExternalResource) {
+            // size of resource is unknown, cache evicts it when required
+            return 0;
+        }
+        try {
+            return Files.size(Path.of(path));
+        } catch (IOException ex) {
+            return 0;
+        }
+    }
+
+    private ExecutorService getPrefetcher() {
+        if (prefetcher == null) {
+            prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "dbseeder-external-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prefetcher;
+    }
+
+    private synchronized void put(String path, String value) {
+        // size of value in bytes of UTF-16 string
+        long weight = 2L * value.length();
+        if ((weight > capacity) || cache.containsKey(path)) {
+            return;
+        }
+        Iterator<String> eldest = cache.values().iterator();
+        while ((size + weight > capacity) && eldest.hasNext()) {
+            size -= 2L * eldest.next().length();
+            eldest.remove();
+        }
+        cache.put(path, value);
+        size += weight;
+    }
+
+    private String read(String path) {
+        if (isExternalResource) {
+            try {
+                return Files.readString(Path.of(path));
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        return new String(readBytes(path), StandardCharsets.UTF_8);
+    }
+
+    private byte[] readBytes(String path) {
+        if (isExternalResource) {
+            try {
+                return Files.readAllBytes(Path.of(path));
+            } catch (IOException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+        ClassLoader classLoader = settings.classLoader() != null
+                ? settings.classLoader()
+                : getClass().getClassLoader();
+        try (InputStream stream = classLoader.getResourceAsStream(path)) {
+            return stream.readAllBytes();
+        } catch (Exception ex) {
+            LOG.error("Error on reading resource: [{}]", path);
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (prefetcher != null) {
+            prefetcher.shutdownNow();
+            prefetcher = null;
+        }
+        cache.clear();
+        size = 0;
+    }
+
+}
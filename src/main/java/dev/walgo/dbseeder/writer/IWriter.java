@@ -3,8 +3,15 @@ package dev.walgo.dbseeder.writer;
 import dev.walgo.dbseeder.data.SeedInfo;
 import org.apache.commons.lang3.tuple.Pair;
 
-public interface IWriter {
+public interface IWriter extends AutoCloseable {
 
     Pair<Integer, Integer> write(SeedInfo info);
 
+    /**
+     * Release resources, held by writer between writes.
+     */
+    @Override
+    default void close() {
+    }
+
 }
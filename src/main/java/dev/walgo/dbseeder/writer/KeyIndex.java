@@ -0,0 +1,91 @@
+package dev.walgo.dbseeder.writer;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keys of table rows, used for checking row existence without query to DB.
+ * <p>
+ * Values are normalized before comparison, because values read from DB and values converted from source can have
+ * different Java types for the same column (e.g. {@link Short} and {@link Integer}).
+ */
+class KeyIndex {
+
+    private final Set<List<Object>> keys = new HashSet<>();
+    private final boolean[] padded;
+
+    /**
+     * Create empty index.
+     *
+     * @param padded flags for key columns with blank-padded type (CHAR)
+     */
+    KeyIndex(boolean[] padded) {
+        this.padded = padded;
+    }
+
+    /**
+     * Add key into index.
+     * <p>
+     * Key with null value is ignored, because it can't be found by SQL condition too.
+     *
+     * @param key key values
+     */
+    void add(List<Object> key) {
+        if (!key.contains(null)) {
+            keys.add(normalize(key));
+        }
+    }
+
+    boolean contains(List<Object> key) {
+        return !key.contains(null) && keys.contains(normalize(key));
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    private List<Object> normalize(List<Object> key) {
+        List<Object> result = new ArrayList<>(key.size());
+        for (int i = 0; i < key.size(); i++) {
+            result.add(normalize(key.get(i), padded[i]));
+        }
+        return result;
+    }
+
+    static Object normalize(Object value, boolean padded) {
+        if (value instanceof String stringValue) {
+            return padded ? stringValue.stripTrailing() : stringValue;
+        } else if (value instanceof BigDecimal decimal) {
+            return decimal.stripTrailingZeros();
+        } else if (value instanceof Number number) {
+            try {
+                return new BigDecimal(number.toString()).stripTrailingZeros();
+            } catch (NumberFormatException ex) {
+                return number;
+            }
+        } else if (value instanceof Timestamp timestamp) {
+            return timestamp.toInstant();
+        } else if (value instanceof ZonedDateTime dateTime) {
+            return dateTime.toInstant();
+        } else if (value instanceof OffsetDateTime dateTime) {
+            return dateTime.toInstant();
+        } else if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        } else if (value instanceof Time time) {
+            return time.toLocalTime();
+        } else if (value instanceof byte[] bytes) {
+            return ByteBuffer.wrap(bytes);
+        } else {
+            return value;
+        }
+    }
+
+}
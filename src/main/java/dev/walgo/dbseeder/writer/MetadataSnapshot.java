@@ -0,0 +1,290 @@
+package dev.walgo.dbseeder.writer;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.walgo.dbseeder.DBSSettings;
+import dev.walgo.dbseeder.db.Database;
+import dev.walgo.walib.db.ColumnInfo;
+import dev.walgo.walib.db.TableInfo;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * On-disk snapshot of table metadata.
+ * <p>
+ * Snapshot contains all tables of schema and columns with primary keys of tables, which were required by the run
+ * that saved it. It's valid while schema fingerprint is the same as the saved one.
+ */
+class MetadataSnapshot {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetadataSnapshot.class);
+    private static final ObjectMapper MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    record Column(String catalog, String schema, String ownerName, String name, int type, String typeName, int size,
+            int digits, int radix, boolean nullable, String comment, String defaultValue, int position,
+            boolean primaryKey) {
+    }
+
+    record Table(String catalog, String schema, String name, String type, String remarks, List<String> keys,
+            Map<String, Column> fields) {
+    }
+
+    record Snapshot(String schema, String fingerprint, List<Table> tables) {
+    }
+
+    private final Path file;
+    private final String schema;
+    private final String fingerprint;
+
+    /**
+     * Create snapshot and calculate current fingerprint of schema.
+     *
+     * @param settings   settings with snapshot file
+     * @param connection DB connection
+     * @param database   DB dialect
+     */
+    MetadataSnapshot(DBSSettings settings, Connection connection, Database database) {
+        this.file = Path.of(settings.metadataSnapshot());
+        this.schema = settings.dbSchema();
+        this.fingerprint = fingerprint(settings, connection, database);
+    }
+
+    private static String fingerprint(DBSSettings settings, Connection connection, Database database) {
+        String sql = settings.metadataFingerprint() != null
+                ? settings.metadataFingerprint()
+                : database.schemaFingerprintQuery();
+        List<String> rows = new ArrayList<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            for (int i = 1; i <= stmt.getParameterMetaData().getParameterCount(); i++) {
+                stmt.setString(i, settings.dbSchema());
+            }
+            try (ResultSet rs = stmt.executeQuery()) {
+                ResultSetMetaData meta = rs.getMetaData();
+                while (rs.next()) {
+                    StringBuilder row = new StringBuilder();
+                    for (int i = 1; i <= meta.getColumnCount(); i++) {
+                        row.append(rs.getString(i)).append('\u0000');
+                    }
+                    rows.add(row.toString());
+                }
+            }
+        } catch (SQLException ex) {
+            LOG.warn("Can't get schema fingerprint, metadata snapshot isn't used: {}", ex.getMessage());
+            return null;
+        }
+        Collections.sort(rows);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String row : rows) {
+                digest.update(row.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Load tables from snapshot.
+     *
+     * @param required lowercase names of tables, which metadata is required
+     * @return tables by lowercase names or null if snapshot is absent or stale
+     */
+    Map<String, TableInfo> load(Set<String> required) {
+        if ((fingerprint == null) || !Files.exists(file)) {
+            return null;
+        }
+        Snapshot snapshot;
+        try {
+            snapshot = MAPPER.readValue(file.toFile(), Snapshot.class);
+        } catch (IOException ex) {
+            LOG.warn("Can't read metadata snapshot [{}]: {}", file, ex.getMessage());
+            return null;
+        }
+        if (!schema.equals(snapshot.schema()) || !fingerprint.equals(snapshot.fingerprint())) {
+            LOG.info("Schema is changed since metadata snapshot [{}] was saved", file);
+            return null;
+        }
+        Map<String, TableInfo> result = new HashMap<>();
+        for (Table table : snapshot.tables()) {
+            result.put(table.name().toLowerCase(Locale.ROOT), new SnapshotTable(table));
+        }
+        for (String name : required) {
+            // snapshot of targeted metadata doesn't contain tables, which weren't required by previous runs
+            TableInfo table = result.get(name);
+            if ((table == null) || (((SnapshotTable) table).fields == null)) {
+                LOG.info("Metadata snapshot [{}] has no columns of table [{}]", file, name);
+                return null;
+            }
+        }
+        LOG.debug("Loaded metadata of [{}] tables from snapshot [{}]", result.size(), file);
+        return result;
+    }
+
+    /**
+     * Save tables into snapshot.
+     *
+     * @param tables   tables by lowercase names
+     * @param required lowercase names of tables, which columns are saved
+     * @throws SQLException on metadata error
+     */
+    void save(Map<String, TableInfo> tables, Set<String> required) throws SQLException {
+        if (fingerprint == null) {
+            return;
+        }
+        List<Table> result = new ArrayList<>(tables.size());
+        for (Map.Entry<String, TableInfo> entry : tables.entrySet()) {
+            TableInfo table = entry.getValue();
+            List<String> keys = null;
+            Map<String, Column> fields = null;
+            if (required.contains(entry.getKey())) {
+                keys = table.getKeys();
+                fields = new LinkedHashMap<>();
+                for (Map.Entry<String, ColumnInfo> field : table.getFields().entrySet()) {
+                    ColumnInfo column = field.getValue();
+                    fields.put(field.getKey(), new Column(column.catalog(), column.schema(), column.ownerName(),
+                            column.name(), column.type(), column.typeName(), column.size(), column.digits(),
+                            column.radix(), column.isNullable(), column.comment(), column.defaultValue(),
+                            column.position(), column.isPrimaryKey()));
+                }
+            }
+            result.add(new Table(table.getCatalog(), table.getSchema(), table.getName(), table.getType(),
+                    table.getRemarks(), keys, fields));
+        }
+        try {
+            Path dir = file.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            // write via temporary file, so concurrent runs never read partially written snapshot
+            Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+            try {
+                MAPPER.writeValue(temp.toFile(), new Snapshot(schema, fingerprint, result));
+                try {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException ex) {
+                    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+            LOG.debug("Saved metadata of [{}] tables into snapshot [{}]", result.size(), file);
+        } catch (IOException ex) {
+            LOG.warn("Can't save metadata snapshot [{}]: {}", file, ex.getMessage());
+        }
+    }
+
+    /**
+     * Table with metadata from snapshot, it doesn't use DB connection.
+     */
+    private static class SnapshotTable extends TableInfo {
+
+        private final Table table;
+        private final Map<String, ColumnInfo> fields;
+
+        SnapshotTable(Table table) {
+            super(null);
+            this.table = table;
+            if (table.fields() == null) {
+                this.fields = null;
+                return;
+            }
+            this.fields = new TreeMap<>();
+            table.fields().forEach((name, column) -> fields.put(name, new ColumnInfo.Builder()
+                    .catalog(column.catalog())
+                    .schema(column.schema())
+                    .ownerName(column.ownerName())
+                    .name(column.name())
+                    .type(column.type())
+                    .typeName(column.typeName())
+                    .size(column.size())
+                    .digits(column.digits())
+                    .radix(column.radix())
+                    .isNullable(column.nullable())
+                    .comment(column.comment())
+                    .defaultValue(column.defaultValue())
+                    .position(column.position())
+                    .isPrimaryKey(column.primaryKey())
+                    .build()));
+        }
+
+        private SQLException notLoaded() {
+            return new SQLException("Metadata of table [%s] isn't saved in snapshot".formatted(table.name()));
+        }
+
+        @Override
+        public String getCatalog() {
+            return table.catalog();
+        }
+
+        @Override
+        public String getSchema() {
+            return table.schema();
+        }
+
+        @Override
+        public String getName() {
+            return table.name();
+        }
+
+        @Override
+        public String getType() {
+            return table.type();
+        }
+
+        @Override
+        public String getRemarks() {
+            return table.remarks();
+        }
+
+        @Override
+        public List<String> getKeys() throws SQLException {
+            if (table.keys() == null) {
+                throw notLoaded();
+            }
+            return table.keys();
+        }
+
+        @Override
+        public Map<String, ColumnInfo> getFields() throws SQLException {
+            if (fields == null) {
+                throw notLoaded();
+            }
+            return fields;
+        }
+
+        @Override
+        public ResultSetMetaData getMetaData() throws SQLException {
+            throw notLoaded();
+        }
+
+        @Override
+        public String toString() {
+            return table.name();
+        }
+    }
+
+}
@@ -0,0 +1,97 @@
+package dev.walgo.dbseeder.writer;
+
+import dev.walgo.dbseeder.data.ReferenceInfo;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.StatementConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keys of referenced tables by values of referenced columns.
+ * <p>
+ * Every reference is loaded once and reused until the referenced table is changed by writer.
+ */
+class ReferenceCache {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReferenceCache.class);
+    private static final int FETCH_SIZE = 10_000;
+    private static final QueryRunner SQL = new QueryRunner(
+            new StatementConfiguration.Builder().fetchSize(FETCH_SIZE).build());
+    private static final Object AMBIGUOUS = new Object();
+
+    private final Map<String, Reference> references = new HashMap<>();
+
+    private record Reference(Map<Object, Object> keys, boolean padded) {
+    }
+
+    private static String cacheKey(ReferenceInfo ref) {
+        return ref.getTableName().toLowerCase(Locale.ROOT) + ':' + ref.getTableColumn() + ':'
+                + ref.getTableKeyColumn();
+    }
+
+    boolean isLoaded(ReferenceInfo ref) {
+        return references.containsKey(cacheKey(ref));
+    }
+
+    /**
+     * Load referenced keys.
+     *
+     * @param connection DB connection
+     * @param ref        reference
+     * @param sql        SQL, which returns key as 1st column and referenced value as 2nd column
+     * @param padded     is referenced column blank-padded (CHAR)
+     */
+    void load(Connection connection, ReferenceInfo ref, String sql, boolean padded) {
+        LOG.trace("Load reference: {}", sql);
+        try {
+            Map<Object, Object> keys = SQL.query(connection, sql, rs -> {
+                Map<Object, Object> result = new HashMap<>();
+                while (rs.next()) {
+                    Object value = KeyIndex.normalize(rs.getObject(2), padded);
+                    Object key = rs.getObject(1);
+                    if (result.putIfAbsent(value, key) != null) {
+                        result.put(value, AMBIGUOUS);
+                    }
+                }
+                return result;
+            });
+            LOG.debug("Loaded [{}] keys from referenced table [{}]", keys.size(), ref.getTableName());
+            references.put(cacheKey(ref), new Reference(keys, padded));
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Find key of referenced row.
+     *
+     * @param ref   reference
+     * @param value value of referenced column(s)
+     * @return key of referenced row or null if value not found
+     */
+    Object find(ReferenceInfo ref, Object value) {
+        Reference reference = references.get(cacheKey(ref));
+        Object result = reference.keys().get(KeyIndex.normalize(value, reference.padded()));
+        if (result == AMBIGUOUS) {
+            throw new RuntimeException("More than one row found in referenced table [%s] for value [%s]"
+                    .formatted(ref.getTableName(), value));
+        }
+        return result;
+    }
+
+    /**
+     * Remove all references to table, e.g. after table data was changed.
+     *
+     * @param tableName table name
+     */
+    void invalidate(String tableName) {
+        String prefix = tableName.toLowerCase(Locale.ROOT) + ':';
+        references.keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+}
@@ -0,0 +1,159 @@
+package dev.walgo.dbseeder.writer;
+
+import dev.walgo.dbseeder.data.DataRow;
+import dev.walgo.dbseeder.data.RowCursor;
+import dev.walgo.dbseeder.data.SeedInfo;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rows of source, which are read and converted by background stages while writer writes previous rows.
+ * <p>
+ * Reader stage reads rows of {@link SeedInfo#openRows()}, converter stage converts values of every row to DB types.
+ * Stages are connected by bounded queues, so stage waits when the next one is behind. Rows are returned in order of
+ * source. Error of stage is thrown to writer, when it reaches the failed row.
+ */
+class RowPipeline implements RowCursor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RowPipeline.class);
+
+    /**
+     * Row with converted values.
+     *
+     * @param data   row
+     * @param values converted values by field positions
+     * @param error  error of stage, row is null then
+     */
+    private record Item(DataRow data, Object[] values, RuntimeException error) {
+    }
+
+    private static final Item END = new Item(null, null, null);
+
+    private final SeedInfo info;
+    private final BlockingQueue<Item> rows;
+    private final BlockingQueue<Item> converted;
+    private final Thread reader;
+    private final Thread converter;
+    private boolean isIterated;
+    private Object[] values;
+
+    /**
+     * Create pipeline and start its stages.
+     *
+     * @param info     source info
+     * @param capacity capacity of every queue between stages
+     * @param convert  converter of row values
+     */
+    RowPipeline(SeedInfo info, int capacity, Function<DataRow, Object[]> convert) {
+        this.info = info;
+        this.rows = new ArrayBlockingQueue<>(capacity);
+        this.converted = new ArrayBlockingQueue<>(capacity);
+        this.reader = newThread("read", () -> {
+            try (RowCursor cursor = info.openRows()) {
+                for (DataRow data : cursor) {
+                    rows.put(new Item(data, null, null));
+                }
+                rows.put(END);
+            } catch (InterruptedException ex) {
+                LOG.trace("Reading of [{}] is stopped", info.getResourceName());
+            } catch (RuntimeException ex) {
+                offer(rows, new Item(null, null, ex));
+            }
+        });
+        this.converter = newThread("convert", () -> {
+            try {
+                Item item;
+                do {
+                    item = rows.take();
+                    if ((item != END) && (item.error() == null)) {
+                        item = new Item(item.data(), convert.apply(item.data()), null);
+                    }
+                    converted.put(item);
+                } while ((item != END) && (item.error() == null));
+            } catch (InterruptedException ex) {
+                LOG.trace("Conversion of [{}] is stopped", info.getResourceName());
+            } catch (RuntimeException ex) {
+                offer(converted, new Item(null, null, ex));
+            }
+        });
+        reader.start();
+        converter.start();
+    }
+
+    private Thread newThread(String stage, Runnable runnable) {
+        Thread thread = new Thread(runnable, "dbseeder-pipeline-" + stage + "-" + info.getTableName());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static void offer(BlockingQueue<Item> queue, Item item) {
+        try {
+            queue.put(item);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Converted values of the row, which was returned by iterator last.
+     *
+     * @return values by field positions
+     */
+    Object[] values() {
+        return values;
+    }
+
+    @Override
+    public Iterator<DataRow> iterator() {
+        if (isIterated) {
+            throw new IllegalStateException("Rows of [%s] are already iterated".formatted(info.getResourceName()));
+        }
+        isIterated = true;
+        return new Iterator<>() {
+            private Item next;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null) {
+                    try {
+                        next = converted.take();
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException(ex);
+                    }
+                }
+                if (next.error() != null) {
+                    throw next.error();
+                }
+                return next != END;
+            }
+
+            @Override
+            public DataRow next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                values = next.values();
+                DataRow data = next.data();
+                next = null;
+                return data;
+            }
+        };
+    }
+
+    /**
+     * Stop stages, source rows are closed by reader stage.
+     */
+    @Override
+    public void close() {
+        values = null;
+        reader.interrupt();
+        converter.interrupt();
+    }
+
+}
@@ -0,0 +1,142 @@
+package dev.walgo.dbseeder.writer;
+
+import java.sql.Array;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Current values of table rows by keys, used for detecting rows, which aren't changed by source.
+ * <p>
+ * Values are compared after normalization (see {@link KeyIndex#normalize(Object, boolean)}), so values of different
+ * Java types are treated as changed only when they really differ. Values, which can't be compared (e.g. after update
+ * by direct value), are always treated as changed.
+ */
+class RowSnapshot {
+
+    private static final Object UNKNOWN = new Object();
+
+    private final Map<List<Object>, Object[]> rows = new HashMap<>();
+    private final boolean[] keyPadded;
+    private final boolean[] padded;
+
+    /**
+     * Create empty snapshot.
+     *
+     * @param keyPadded flags for key columns with blank-padded type (CHAR)
+     * @param padded    flags for value columns with blank-padded type (CHAR)
+     */
+    RowSnapshot(boolean[] keyPadded, boolean[] padded) {
+        this.keyPadded = keyPadded;
+        this.padded = padded;
+    }
+
+    private List<Object> normalize(List<Object> key) {
+        List<Object> result = new ArrayList<>(key.size());
+        for (int i = 0; i < key.size(); i++) {
+            result.add(KeyIndex.normalize(key.get(i), keyPadded[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Add row into snapshot.
+     * <p>
+     * Row with null key value is ignored, because it can't be found by SQL condition too.
+     *
+     * @param key    key values
+     * @param values values of non-key columns
+     */
+    void add(List<Object> key, Object[] values) {
+        if (!key.contains(null)) {
+            rows.put(normalize(key), values);
+        }
+    }
+
+    /**
+     * Current values of row.
+     *
+     * @param key key values
+     * @return values of non-key columns or null if row isn't in snapshot
+     */
+    Object[] get(List<Object> key) {
+        return key.contains(null) ? null : rows.get(normalize(key));
+    }
+
+    int size() {
+        return rows.size();
+    }
+
+    /**
+     * Is value the same as current one?
+     *
+     * @param values current values of row
+     * @param idx    column index
+     * @param value  new value, converted to DB type
+     * @return true if value isn't changed
+     */
+    boolean isSame(Object[] values, int idx, Object value) {
+        return isSame(values[idx], value, padded[idx]);
+    }
+
+    /**
+     * Mark value of row as unknown, e.g. after update by direct value.
+     *
+     * @param values current values of row
+     * @param idx    column index
+     */
+    static void setUnknown(Object[] values, int idx) {
+        values[idx] = UNKNOWN;
+    }
+
+    private static boolean isSame(Object current, Object value, boolean padded) {
+        if ((current == UNKNOWN) || (value == UNKNOWN)) {
+            return false;
+        }
+        if ((current == null) || (value == null)) {
+            return (current == null) && (value == null);
+        }
+        Object[] currentArray = toArray(current);
+        Object[] valueArray = toArray(value);
+        if ((currentArray != null) || (valueArray != null)) {
+            if ((currentArray == null) || (valueArray == null) || (currentArray.length != valueArray.length)) {
+                return false;
+            }
+            for (int i = 0; i < currentArray.length; i++) {
+                if (!isSame(currentArray[i], valueArray[i], padded)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        return Objects.equals(KeyIndex.normalize(current, padded), KeyIndex.normalize(value, padded));
+    }
+
+    private static Object[] toArray(Object value) {
+        try {
+            if (value instanceof Array array) {
+                value = array.getArray();
+            }
+        } catch (SQLException ex) {
+            // can't compare, so treat as changed
+            return new Object[] { UNKNOWN };
+        }
+        if (value instanceof Object[] objects) {
+            return objects;
+        } else if (value instanceof List<?> list) {
+            return list.toArray();
+        } else if ((value != null) && value.getClass().isArray() && !(value instanceof byte[])) {
+            int length = java.lang.reflect.Array.getLength(value);
+            Object[] result = new Object[length];
+            for (int i = 0; i < length; i++) {
+                result[i] = java.lang.reflect.Array.get(value, i);
+            }
+            return result;
+        }
+        return null;
+    }
+
+}
@@ -4,7 +4,11 @@ import dev.walgo.dbseeder.DBSSettings;
 import dev.walgo.dbseeder.data.DataRow;
 import dev.walgo.dbseeder.data.ReferenceInfo;
 import dev.walgo.dbseeder.data.SeedInfo;
+import dev.walgo.dbseeder.db.Database;
+import dev.walgo.dbseeder.db.Upsert;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
@@ -18,6 +22,8 @@ public class SQLGenerator {
     public static final String DIRECT_VALUE_SIGN = "!!";
     public static final String DATA_PLACEHOLDER = "?";
 
+    private static final String TABLE_ALIAS = "t";
+
     private static final Logger LOG = LoggerFactory.getLogger(SQLGenerator.class);
 
     private final Map<String, SeedInfo> sources;
@@ -47,7 +53,7 @@ public class SQLGenerator {
             value = value2replacement(data.values().get(fieldInfo.index));
             fieldNames.append(field);
             ReferenceInfo ref = info.getReferences().get(field);
-            if (ref != null) {
+            if ((ref != null) && !isCachedReference(value)) {
                 insertVars.append("(").append(reference(ref, value)).append(")");
             } else {
                 insertVars.append(value);
@@ -67,6 +73,18 @@ public class SQLGenerator {
     }
 
     public RequestInfo update(SeedInfo info, DataRow data) {
+        return update(info, data, null);
+    }
+
+    /**
+     * Update of changed fields only.
+     *
+     * @param info   source info
+     * @param data   row
+     * @param fields non-key fields to update or null for all fields
+     * @return update request or null if there are no fields to update
+     */
+    public RequestInfo update(SeedInfo info, DataRow data, Collection<String> fields) {
         final StringBuilder updateStr = new StringBuilder();
         final StringBuilder whereString = new StringBuilder();
         List<RequestInfo.Field> whereFields = new ArrayList<>();
@@ -79,7 +97,9 @@ public class SQLGenerator {
             }
             ReferenceInfo ref = info.getReferences().get(field);
             String placeholder = value2replacement(rawValue);
-            String itemValue = ref == null ? placeholder : "(" + reference(ref, placeholder) + ")";
+            String itemValue = (ref == null) || isCachedReference(placeholder)
+                    ? placeholder
+                    : "(" + reference(ref, placeholder) + ")";
             if (info.getKeys().containsKey(field)) {
                 if (!whereString.isEmpty()) {
                     whereString.append(" AND ");
@@ -89,7 +109,7 @@ public class SQLGenerator {
                     whereVars.add(data.values().get(fieldInfo.index));
                     whereFields.add(new RequestInfo.Field(field, fieldInfo.index));
                 }
-            } else {
+            } else if ((fields == null) || fields.contains(field)) {
                 if (!updateStr.isEmpty()) {
                     updateStr.append(", ");
                 }
@@ -115,14 +135,126 @@ public class SQLGenerator {
         return builder.build();
     }
 
+    /**
+     * Native upsert of row.
+     *
+     * @param info     source info
+     * @param data     row
+     * @param database database with upsert support
+     * @return upsert request
+     */
+    public RequestInfo upsert(SeedInfo info, DataRow data, Database database) {
+        Map<String, String> values = new LinkedHashMap<>();
+        info.getFields().forEach((field, fieldInfo) -> {
+            Object rawValue = data.values().get(fieldInfo.index);
+            if (info.ignoreOmits() && (rawValue == null)) {
+                return;
+            }
+            ReferenceInfo ref = info.getReferences().get(field);
+            String placeholder = value2replacement(rawValue);
+            values.put(field, (ref == null) || isCachedReference(placeholder)
+                    ? placeholder
+                    : "(" + reference(ref, placeholder) + ")");
+        });
+        Upsert upsert = database.upsert(info.getTableName(), values, info.getKeys().keySet());
+        RequestInfo.Builder builder = new RequestInfo.Builder();
+        for (String field : upsert.columns()) {
+            int idx = info.getFields().get(field).index;
+            if (isPlaceholder(value2replacement(data.values().get(idx)))) {
+                builder.addData(data.values().get(idx));
+                builder.addFields(new RequestInfo.Field(field, idx));
+            }
+        }
+        builder.sql(upsert.sql());
+        return builder.build();
+    }
+
     public String reference(ReferenceInfo reference, Object value) {
-        String column = StringUtils.join(reference.getTableColumn(),
-                " || '" + settings.csvMultiRefDelimiter() + "' || ");
         String result = "SELECT %s FROM %s WHERE %s = %s".formatted(reference.getTableKeyColumn(),
-                reference.getTableName(), column, value);
+                reference.getTableName(), referenceColumn(reference), value);
+        return result + referenceCondition(reference);
+    }
+
+    /**
+     * Reverse reference: select value of referenced column(s) by referenced table key.
+     *
+     * @param reference reference info
+     * @param keyValue  value (or column) with referenced table key
+     * @return SQL for select referenced value
+     */
+    public String referenceValue(ReferenceInfo reference, String keyValue) {
+        String result = "SELECT %s FROM %s WHERE %s = %s".formatted(referenceColumn(reference),
+                reference.getTableName(), reference.getTableKeyColumn(), keyValue);
+        return result + referenceCondition(reference);
+    }
+
+    /**
+     * Select keys of referenced table with referenced column(s) values.
+     *
+     * @param reference reference info
+     * @return SQL for select key (1st column) and referenced value (2nd column)
+     */
+    public String selectReference(ReferenceInfo reference) {
+        String result = "SELECT %s, %s FROM %s".formatted(reference.getTableKeyColumn(), referenceColumn(reference),
+                reference.getTableName());
         SeedInfo refInfo = sources.get(reference.getTableName());
         if ((refInfo != null) && (refInfo.getExtraCondition() != null) && !refInfo.getExtraCondition().isEmpty()) {
-            result += " AND " + refInfo.getExtraCondition();
+            result += " WHERE " + refInfo.getExtraCondition();
+        }
+        return result;
+    }
+
+    private String referenceColumn(ReferenceInfo reference) {
+        return StringUtils.join(reference.getTableColumn(), " || '" + settings.csvMultiRefDelimiter() + "' || ");
+    }
+
+    private String referenceCondition(ReferenceInfo reference) {
+        SeedInfo refInfo = sources.get(reference.getTableName());
+        if ((refInfo != null) && (refInfo.getExtraCondition() != null) && !refInfo.getExtraCondition().isEmpty()) {
+            return " AND " + refInfo.getExtraCondition();
+        }
+        return "";
+    }
+
+    /**
+     * Select keys of all table rows.
+     * <p>
+     * Referenced key columns are selected as values of referenced columns, i.e. in the same form as in source data,
+     * except when references are resolved via cache.
+     *
+     * @param info source info
+     * @return SQL for select keys in order of {@link SeedInfo#getKeys()}
+     */
+    public String selectKeys(SeedInfo info) {
+        return selectColumns(info, info.getKeys().keySet());
+    }
+
+    /**
+     * Select keys and values of non-key fields of all table rows.
+     * <p>
+     * Columns are selected in the same form as by {@link #selectKeys(SeedInfo)}.
+     *
+     * @param info source info
+     * @return SQL for select keys in order of {@link SeedInfo#getKeys()}, then non-key fields in order of
+     *         {@link SeedInfo#getFields()}
+     */
+    public String selectRows(SeedInfo info) {
+        List<String> fields = new ArrayList<>(info.getKeys().keySet());
+        info.getFields().keySet().stream().filter(it -> !info.getKeys().containsKey(it)).forEach(fields::add);
+        return selectColumns(info, fields);
+    }
+
+    private String selectColumns(SeedInfo info, Collection<String> fields) {
+        List<String> columns = new ArrayList<>();
+        for (String field : fields) {
+            ReferenceInfo ref = info.getReferences().get(field);
+            String column = TABLE_ALIAS + "." + field;
+            columns.add((ref == null) || settings.referenceCache() ? column : "(" + referenceValue(ref, column) + ")");
+        }
+        String result = "SELECT %s FROM %s %s".formatted(StringUtils.join(columns, ", "), info.getTableName(),
+                TABLE_ALIAS);
+        if ((info.getExtraCondition() != null) && !info.getExtraCondition().isEmpty()) {
+            result += " WHERE " + info.getExtraCondition();
         }
         return result;
     }
@@ -137,7 +269,7 @@ public class SQLGenerator {
             Object value = data.values().get(key.getValue());
             String checkValue = value2replacement(value);
             boolean usePlaceholder = isPlaceholder(checkValue);
-            if (info.getReferences().containsKey(key.getKey())) {
+            if (info.getReferences().containsKey(key.getKey()) && !isCachedReference(checkValue)) {
                 ReferenceInfo ref = info.getReferences().get(key.getKey());
                 String refSql = reference(ref, checkValue);
                 checkValue = '(' + refSql + ')';
@@ -172,6 +304,16 @@ public class SQLGenerator {
         }
     }
 
+    /**
+     * Is reference resolved by writer via reference cache instead of subselect?
+     *
+     * @param value value replacement
+     * @return true if reference value is a placeholder for referenced key
+     */
+    private boolean isCachedReference(Object value) {
+        return settings.referenceCache() && isPlaceholder(value);
+    }
+
     private boolean isPlaceholder(Object data) {
         if (data instanceof String stringData) {
             return DATA_PLACEHOLDER.equals(stringData);
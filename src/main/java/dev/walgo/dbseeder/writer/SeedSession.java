@@ -0,0 +1,237 @@
+package dev.walgo.dbseeder.writer;
+
+import dev.walgo.dbseeder.DBSSettings;
+import dev.walgo.dbseeder.data.ReferenceInfo;
+import dev.walgo.dbseeder.data.SeedInfo;
+import dev.walgo.dbseeder.db.Database;
+import dev.walgo.dbseeder.db.UnknownDatabase;
+import dev.walgo.walib.db.DBInfo;
+import dev.walgo.walib.db.TableInfo;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Data shared by all writers of one seeding run.
+ * <p>
+ * Session resolves database dialect, loads table metadata and compiles statements once, so writers created for every
+ * table (or for every worker of parallel writing) don't repeat it. Metadata of source tables and tables referenced by
+ * sources is loaded completely on first access, so it can be used by writers with other connections. Values of
+ * external files are cached by session too. Session is thread-safe and should be closed after the run.
+ */
+public class SeedSession implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SeedSession.class);
+
+    private final List<SeedInfo> infos;
+    private final DBSSettings settings;
+    private final SQLGenerator generator;
+    private final Class<? extends Database> databaseClass;
+    private final Map<SeedInfo, StatementPlan> plans = Collections.synchronizedMap(new IdentityHashMap<>());
+    private final Map<String, Boolean> uniqueKeys = new ConcurrentHashMap<>();
+    private final ExternalValues externalValues;
+    private Map<String, TableInfo> tables;
+
+    /**
+     * Create session.
+     *
+     * @param infos    all sources of run
+     * @param settings settings with connection, which is used for loading of metadata
+     */
+    public SeedSession(List<SeedInfo> infos, DBSSettings settings) {
+        if (settings.connection() == null) {
+            throw new IllegalArgumentException("Session requires connection, lease it from data source");
+        }
+        this.infos = infos;
+        this.settings = settings;
+        this.generator = new SQLGenerator(infos, settings);
+        this.databaseClass = resolveDatabase(settings.connection());
+        this.externalValues = new ExternalValues(settings);
+    }
+
+    private static Class<? extends Database> resolveDatabase(Connection connection) {
+        String url = null;
+        try {
+            url = connection.getMetaData().getURL();
+        } catch (SQLException ex) {
+            LOG.error("Can't find database URL", ex);
+        }
+        if (url != null) {
+            for (Database db : ServiceLoader.load(Database.class)) {
+                if (db.handlesJDBCUrl(url)) {
+                    return db.getClass();
+                }
+            }
+        }
+        return UnknownDatabase.class;
+    }
+
+    public List<SeedInfo> getInfos() {
+        return infos;
+    }
+
+    public SQLGenerator getGenerator() {
+        return generator;
+    }
+
+    /**
+     * Create database dialect for connection.
+     *
+     * @param connection connection of writer
+     * @return database
+     */
+    public Database newDatabase(Connection connection) {
+        try {
+            Database database = databaseClass.getDeclaredConstructor().newInstance();
+            database.setConnection(connection);
+            return database;
+        } catch (InstantiationException | IllegalAccessException | InvocationTargetException
+                | NoSuchMethodException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Tables of schema by lowercase names.
+     * <p>
+     * Tables are loaded from {@link DBSSettings#metadataSnapshot()} when it's valid. With
+     * {@link DBSSettings#targetedMetadata()} only tables of sources and referenced tables are returned.
+     *
+     * @return tables
+     * @throws SQLException on metadata error
+     */
+    public synchronized Map<String, TableInfo> getTables() throws SQLException {
+        if (tables == null) {
+            Set<String> required = new HashSet<>();
+            for (SeedInfo info : infos) {
+                required.add(info.getTableName().toLowerCase(Locale.ROOT));
+                for (ReferenceInfo ref : info.getReferences().values()) {
+                    required.add(ref.getTableName().toLowerCase(Locale.ROOT));
+                }
+            }
+            MetadataSnapshot snapshot = settings.metadataSnapshot() != null
+                    ? new MetadataSnapshot(settings, settings.connection(), newDatabase(settings.connection()))
+                    : null;
+            Map<String, TableInfo> result = snapshot != null ? snapshot.load(required) : null;
+            if (result == null) {
+                result = settings.targetedMetadata() ? loadTargeted(required) : loadAll(required);
+                if (snapshot != null) {
+                    snapshot.save(result, required);
+                }
+            }
+            tables = result;
+        }
+        return tables;
+    }
+
+    private Map<String, TableInfo> loadAll(Set<String> required) throws SQLException {
+        Map<String, TableInfo> result = new DBInfo(settings.connection(), null, settings.dbSchema(), null)
+                .getTablesAsMap();
+        // table metadata is loaded lazily by connection of session, so load it while the connection is available
+        for (String tableName : required) {
+            TableInfo table = result.get(tableName);
+            if (table != null) {
+                table.getFields();
+                table.getKeys();
+            }
+        }
+        return result;
+    }
+
+    private Map<String, TableInfo> loadTargeted(Set<String> required) throws SQLException {
+        Map<String, TableInfo> result = new ConcurrentHashMap<>();
+        int threads = Math.min(settings.parallelism(), required.size());
+        if ((settings.dataSource() == null) || (threads < 2)) {
+            for (String tableName : required) {
+                loadTable(settings.connection(), tableName, result);
+            }
+            return result;
+        }
+        // every table is loaded by its own connection, metadata is loaded completely, so connection can be closed
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(required.size());
+            for (String tableName : required) {
+                futures.add(executor.submit(() -> {
+                    try (Connection connection = settings.dataSource().getConnection()) {
+                        loadTable(connection, tableName, result);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SQLException sqlEx) {
+                throw sqlEx;
+            }
+            throw new RuntimeException(ex.getCause());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } finally {
+            executor.shutdownNow();
+        }
+        LOG.debug("Loaded metadata of [{}] tables", result.size());
+        return result;
+    }
+
+    private void loadTable(Connection connection, String tableName, Map<String, TableInfo> result)
+            throws SQLException {
+        DatabaseMetaData meta = connection.getMetaData();
+        String name = tableName;
+        if (meta.storesUpperCaseIdentifiers()) {
+            name = tableName.toUpperCase(Locale.ROOT);
+        } else if (meta.storesLowerCaseIdentifiers()) {
+            name = tableName.toLowerCase(Locale.ROOT);
+        }
+        List<TableInfo> found = new DBInfo(connection, null, settings.dbSchema(), name).getTables();
+        if (found.isEmpty() && !name.equals(tableName)) {
+            // quoted name in other case
+            found = new DBInfo(connection, null, settings.dbSchema(), tableName).getTables();
+        }
+        for (TableInfo table : found) {
+            if (table.getName().equalsIgnoreCase(tableName)) {
+                table.getFields();
+                table.getKeys();
+                result.put(tableName, table);
+            }
+        }
+    }
+
+    StatementPlan getPlan(SeedInfo info) {
+        return plans.computeIfAbsent(info, it -> new StatementPlan(generator, it));
+    }
+
+    Map<String, Boolean> getUniqueKeys() {
+        return uniqueKeys;
+    }
+
+    ExternalValues getExternalValues() {
+        return externalValues;
+    }
+
+    @Override
+    public void close() {
+        externalValues.close();
+    }
+
+}
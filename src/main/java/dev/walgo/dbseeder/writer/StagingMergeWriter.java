@@ -0,0 +1,345 @@
+package dev.walgo.dbseeder.writer;
+
+import dev.walgo.dbseeder.DBSSettings;
+import dev.walgo.dbseeder.data.ActionType;
+import dev.walgo.dbseeder.data.DataRow;
+import dev.walgo.dbseeder.data.ReferenceInfo;
+import dev.walgo.dbseeder.data.RowCursor;
+import dev.walgo.dbseeder.data.SeedInfo;
+import dev.walgo.dbseeder.db.Database;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.StreamSupport;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ArrayListHandler;
+import org.apache.commons.dbutils.handlers.ColumnListHandler;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Writer, which applies rows of <b>insert</b> and <b>modify</b> seeds by a few set-based statements.
+ * <p>
+ * Rows are loaded into session temporary table (via bulk load, when it's enabled and DB supports it), references are
+ * resolved by joins (values, which aren't found in referenced tables, are reported at once before writing), then
+ * existing rows are updated by single <code>UPDATE</code> and new rows are inserted by single <code>INSERT ...
+ * SELECT</code>. Seeds with listeners, direct values, streamed external values, ignored omits or self-references are
+ * written row by row.
+ * <p>
+ * From rows with the same keys only the last one (for <b>modify</b>) or the first one (for <b>insert</b>) is applied,
+ * so table data is the same as after row by row writing, but numbers of inserted/updated rows can differ. With
+ * {@link DBSSettings#skipUnchanged()} only rows with changed values are updated.
+ */
+public class StagingMergeWriter extends DBWriter {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StagingMergeWriter.class);
+    private static final QueryRunner SQL = new QueryRunner();
+    private static final String RAW_TABLE = "dbseeder_raw_";
+    private static final String STAGE_TABLE = "dbseeder_stage_";
+    private static final String LINE_COLUMN = "dbseeder_line";
+    private static final String COLUMN_PREFIX = "dbseeder_";
+    private static final int BATCH_SIZE = 1000;
+    private static final AtomicLong TABLE_SUFFIX = new AtomicLong();
+
+    public StagingMergeWriter(List<SeedInfo> infos, DBSSettings settings) {
+        super(infos, settings);
+    }
+
+    public StagingMergeWriter(SeedSession session, DBSSettings settings) {
+        super(session, settings);
+    }
+
+    /**
+     * Can seed be written via temporary table? Values of rows are checked while they are loaded (see
+     * {@link #isStageable(DataRow)}).
+     *
+     * @param info source info
+     * @return true if seed can be staged
+     */
+    private boolean isStageable(SeedInfo info) {
+        if (((info.getAction() != ActionType.MODIFY) && (info.getAction() != ActionType.INSERT))
+                || info.ignoreOmits()) {
+            return false;
+        }
+        DBSSettings settings = getSettings();
+        if (hasEvent(settings.onRow(), info) || hasEvent(settings.onInsert(), info)
+                || hasEvent(settings.onUpdate(), info) || hasEvent(settings.onAfterInsert(), info)) {
+            return false;
+        }
+        for (ReferenceInfo ref : info.getReferences().values()) {
+            if (ref.getTableName().equalsIgnoreCase(info.getTableName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Can row be loaded into temporary table?
+     *
+     * @param data row
+     * @return false if row has direct or streamed external values
+     */
+    private boolean isStageable(DataRow data) {
+        for (Object value : data.values()) {
+            if (((value instanceof String stringValue)
+                    && stringValue.startsWith(SQLGenerator.DIRECT_VALUE_SIGN)) || isStreamed(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    protected Pair<Integer, Integer> writeSet(SeedInfo info) throws SQLException {
+        if (!isStageable(info)) {
+            return null;
+        }
+        Connection conn = getSettings().connection();
+        Database database = getDatabase();
+        SQLGenerator generator = getSession().getGenerator();
+        List<RequestInfo.Field> fields = new ArrayList<>(info.getFields().size());
+        info.getFields().forEach((name, fieldInfo) -> fields.add(new RequestInfo.Field(name, fieldInfo.index)));
+        // references are already resolved into keys by converter when reference cache is used
+        Map<String, ReferenceInfo> refs = getSettings().referenceCache() ? Map.of() : info.getReferences();
+        Map<String, String> stageColumns = new HashMap<>();
+        List<String> rawColumns = new ArrayList<>();
+        List<String> stageSelect = new ArrayList<>();
+        List<String> joins = new ArrayList<>();
+        rawColumns.add("CAST(0 AS INTEGER) AS " + LINE_COLUMN);
+        stageSelect.add("s." + LINE_COLUMN);
+        for (int i = 0; i < fields.size(); i++) {
+            String name = fields.get(i).name();
+            String column = COLUMN_PREFIX + i;
+            stageColumns.put(name, column);
+            ReferenceInfo ref = refs.get(name);
+            if (ref == null) {
+                rawColumns.add(name + " AS " + column);
+                stageSelect.add("s." + column);
+            } else {
+                String alias = "r" + i;
+                rawColumns.add("(" + generator.referenceValue(ref, "NULL") + ") AS " + column);
+                stageSelect.add(alias + ".dbseeder_key AS " + column);
+                joins.add(" LEFT JOIN (%s) AS %s (dbseeder_key, dbseeder_value) ON %s.dbseeder_value = s.%s"
+                        .formatted(generator.selectReference(ref), alias, alias, column));
+            }
+        }
+        // temporary tables of other writers can exist in the same session
+        long suffix = TABLE_SUFFIX.incrementAndGet();
+        String rawTable = RAW_TABLE + suffix;
+        String stageTable = STAGE_TABLE + suffix;
+        String loadTable = joins.isEmpty() ? stageTable : rawTable;
+        List<String> created = new ArrayList<>();
+        try {
+            execute(conn, database.createTempTable(loadTable,
+                    "SELECT %s FROM %s WHERE 1 = 0".formatted(String.join(", ", rawColumns), info.getTableName()),
+                    false));
+            created.add(loadTable);
+            long loaded = load(info, loadTable, fields);
+            if (loaded < 0) {
+                LOG.debug("Rows of [{}] can't be staged, they are written row by row", info.getResourceName());
+                return null;
+            }
+            if (loaded == 0) {
+                return Pair.of(0, 0);
+            }
+            if (!joins.isEmpty()) {
+                checkReferences(conn, info, rawTable, refs, stageColumns);
+                execute(conn, database.createTempTable(stageTable, "SELECT %s FROM %s s%s"
+                        .formatted(String.join(", ", stageSelect), rawTable, String.join("", joins)), true));
+                created.add(stageTable);
+                List<Number> ambiguous = SQL.query(conn,
+                        "SELECT %1$s FROM %2$s GROUP BY %1$s HAVING COUNT(*) > 1".formatted(LINE_COLUMN, stageTable),
+                        new ColumnListHandler<>());
+                if (!ambiguous.isEmpty()) {
+                    throw new RuntimeException("More than one row found in referenced table for lines %s of file [%s]"
+                            .formatted(ambiguous, info.getResourceName()));
+                }
+            }
+            List<String> keyConditions = new ArrayList<>();
+            info.getKeys().keySet().forEach(key -> keyConditions.add("%s = s.%s"
+                    .formatted(key, stageColumns.get(key))));
+            // apply only one row from rows with the same keys, like row by row writing does
+            List<String> duplicateConditions = new ArrayList<>();
+            info.getKeys().keySet().forEach(key -> duplicateConditions.add("d.%1$s = s.%1$s"
+                    .formatted(stageColumns.get(key))));
+            duplicateConditions.add("d.%1$s %2$s s.%1$s".formatted(LINE_COLUMN,
+                    info.getAction() == ActionType.MODIFY ? ">" : "<"));
+            execute(conn, "DELETE FROM %1$s s WHERE EXISTS (SELECT 1 FROM %1$s d WHERE %2$s)"
+                    .formatted(stageTable, String.join(" AND ", duplicateConditions)));
+            String extraCondition = (info.getExtraCondition() != null) && !info.getExtraCondition().isEmpty()
+                    ? " AND " + info.getExtraCondition()
+                    : "";
+            int updated = 0;
+            if (info.getAction() == ActionType.MODIFY) {
+                updated = update(conn, database, info, stageTable, fields, stageColumns, keyConditions,
+                        extraCondition);
+            }
+            List<String> insertColumns = new ArrayList<>();
+            List<String> insertValues = new ArrayList<>();
+            fields.forEach(field -> {
+                insertColumns.add(field.name());
+                insertValues.add("s." + stageColumns.get(field.name()));
+            });
+            String insertSql = ("INSERT INTO %1$s (%2$s) SELECT %3$s FROM %4$s s WHERE NOT EXISTS "
+                    + "(SELECT 1 FROM %1$s WHERE %5$s%6$s) ORDER BY s.%7$s")
+                    .formatted(info.getTableName(), String.join(", ", insertColumns),
+                            String.join(", ", insertValues), stageTable, String.join(" AND ", keyConditions),
+                            extraCondition, LINE_COLUMN);
+            int inserted = execute(conn, insertSql);
+            return Pair.of(inserted, updated);
+        } finally {
+            for (String table : created) {
+                try {
+                    execute(conn, database.dropTempTable(table));
+                } catch (SQLException ex) {
+                    LOG.error("Can't drop temporary table [{}]", table, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Fail on referenced values, which aren't found in referenced tables, like row by row writing does.
+     * <p>
+     * All missed values are reported at once, before data is written.
+     *
+     * @param conn         connection
+     * @param info         source info
+     * @param rawTable     temporary table with loaded rows
+     * @param refs         references to resolve
+     * @param stageColumns columns of temporary table by field names
+     * @throws SQLException on query error
+     */
+    private void checkReferences(Connection conn, SeedInfo info, String rawTable, Map<String, ReferenceInfo> refs,
+            Map<String, String> stageColumns) throws SQLException {
+        SQLGenerator generator = getSession().getGenerator();
+        List<String> errors = new ArrayList<>();
+        for (Map.Entry<String, ReferenceInfo> entry : refs.entrySet()) {
+            String column = stageColumns.get(entry.getKey());
+            if (column == null) {
+                continue;
+            }
+            ReferenceInfo ref = entry.getValue();
+            List<Object[]> missed = SQL.query(conn, ("SELECT s.%1$s, s.%2$s FROM %3$s s WHERE s.%2$s IS NOT NULL "
+                    + "AND NOT EXISTS (SELECT 1 FROM (%4$s) AS r (dbseeder_key, dbseeder_value) "
+                    + "WHERE r.dbseeder_value = s.%2$s) ORDER BY s.%1$s")
+                    .formatted(LINE_COLUMN, column, rawTable, generator.selectReference(ref)),
+                    new ArrayListHandler());
+            missed.forEach(row -> errors.add("line [%s]: value [%s] not found in referenced table [%s], column(s) %s"
+                    .formatted(row[0], row[1], ref.getTableName(), ref.getTableColumn())));
+        }
+        if (!errors.isEmpty()) {
+            throw new RuntimeException("Unresolved references in file [%s]:%n%s"
+                    .formatted(info.getResourceName(), String.join(System.lineSeparator(), errors)));
+        }
+    }
+
+    private int update(Connection conn, Database database, SeedInfo info, String stageTable,
+            List<RequestInfo.Field> fields, Map<String, String> stageColumns, List<String> keyConditions,
+            String extraCondition) throws SQLException {
+        List<String> updates = new ArrayList<>();
+        List<String> changes = new ArrayList<>();
+        for (RequestInfo.Field field : fields) {
+            if (info.getKeys().containsKey(field.name())) {
+                continue;
+            }
+            String column = stageColumns.get(field.name());
+            changes.add("%s IS DISTINCT FROM s.%s".formatted(field.name(), column));
+            updates.add(database.hasUpdateFrom()
+                    ? "%s = s.%s".formatted(field.name(), column)
+                    : "%s = (SELECT s.%s FROM %s s WHERE %s)".formatted(field.name(), column, stageTable,
+                            String.join(" AND ", keyConditions)));
+        }
+        if (updates.isEmpty()) {
+            LOG.warn("No fields to update for file [{}]", info.getResourceName());
+            return 0;
+        }
+        String keyCondition = String.join(" AND ", keyConditions);
+        if (getSettings().skipUnchanged()) {
+            keyCondition += " AND (" + String.join(" OR ", changes) + ")";
+        }
+        String sql = database.hasUpdateFrom()
+                ? "UPDATE %s SET %s FROM %s s WHERE %s%s".formatted(info.getTableName(), String.join(", ", updates),
+                        stageTable, keyCondition, extraCondition)
+                : "UPDATE %s SET %s WHERE EXISTS (SELECT 1 FROM %s s WHERE %s)%s".formatted(info.getTableName(),
+                        String.join(", ", updates), stageTable, keyCondition, extraCondition);
+        return execute(conn, sql);
+    }
+
+    /**
+     * Load converted rows into temporary table.
+     * <p>
+     * Loading stops at the first row, which can't be staged.
+     *
+     * @param info   source info
+     * @param table  temporary table
+     * @param fields source fields
+     * @return number of loaded rows or -1 if rows can't be staged
+     * @throws SQLException on load error
+     */
+    private long load(SeedInfo info, String table, List<RequestInfo.Field> fields) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        columns.add(LINE_COLUMN);
+        for (int i = 0; i < fields.size(); i++) {
+            columns.add(COLUMN_PREFIX + i);
+        }
+        AtomicBoolean isStageable = new AtomicBoolean(true);
+        AtomicLong loaded = new AtomicLong();
+        try (RowCursor cursor = info.openRows()) {
+            Iterable<Object[]> rows = () -> StreamSupport.stream(cursor.spliterator(), false).takeWhile(data -> {
+                if (isStageable(data)) {
+                    return true;
+                }
+                isStageable.set(false);
+                return false;
+            }).map(data -> {
+                try {
+                    Object[] values = convertRow(info, fields, data);
+                    Object[] row = new Object[values.length + 1];
+                    row[0] = data.sourceNumber();
+                    System.arraycopy(values, 0, row, 1, values.length);
+                    loaded.incrementAndGet();
+                    return row;
+                } catch (RuntimeException e) {
+                    LOG.error("Error on file [{}], line [{}]: {}", info.getResourceName(), data.sourceNumber(),
+                            e.getMessage(), e);
+                    throw e;
+                }
+            }).iterator();
+            Database database = getDatabase();
+            if (getSettings().bulkLoad() && database.hasBulkLoad()) {
+                database.bulkLoad(table, columns, rows);
+                return isStageable.get() ? loaded.get() : -1;
+            }
+            String sql = "INSERT INTO %s (%s) VALUES (%s)".formatted(table, String.join(", ", columns),
+                    String.join(", ", Collections.nCopies(columns.size(), SQLGenerator.DATA_PLACEHOLDER)));
+            int batchSize = getSettings().batchSize() >= 2 ? getSettings().batchSize() : BATCH_SIZE;
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            for (Object[] row : rows) {
+                batch.add(row);
+                if (batch.size() >= batchSize) {
+                    SQL.batch(getSettings().connection(), sql, batch.toArray(Object[][]::new));
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                SQL.batch(getSettings().connection(), sql, batch.toArray(Object[][]::new));
+            }
+            return isStageable.get() ? loaded.get() : -1;
+        }
+    }
+
+    private static int execute(Connection conn, String sql) throws SQLException {
+        LOG.trace("Execute: {}", sql);
+        return SQL.update(conn, sql);
+    }
+
+}
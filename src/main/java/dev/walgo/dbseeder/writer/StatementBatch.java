@@ -0,0 +1,147 @@
+package dev.walgo.dbseeder.writer;
+
+import java.sql.BatchUpdateException;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rows waiting to be sent into DB via JDBC batches.
+ * <p>
+ * Inserts and updates are collected into separate batches, so rows, which switch between insert and update, don't
+ * break batches. Pending inserts are sent before every batch of updates, so a row is never updated before its insert.
+ * Every batch contains statements with the same SQL only, so it's flushed before a statement with other SQL is added.
+ * Key values of pending rows are kept to allow flushing before checking a row with the same key.
+ * <p>
+ * Streams of external values ({@link ExternalStream}) are opened on execution of batch and kept open until it's done,
+ * so batch is flushed when its rows have {@link #MAX_STREAMS} streamed values, whatever its size is.
+ */
+class StatementBatch {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatementBatch.class);
+    /** Max number of streamed values in one batch. */
+    static final int MAX_STREAMS = 100;
+
+    private final StatementCache statements;
+    private final int maxSize;
+    private final Pending inserts = new Pending(true);
+    private final Pending updates = new Pending(false);
+    private int inserted;
+    private int updated;
+
+    StatementBatch(StatementCache statements, int maxSize) {
+        this.statements = statements;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Is row with given key waiting in batch?
+     *
+     * @param key key values of row
+     * @return true if row with the same key isn't written yet
+     */
+    boolean containsKey(List<Object> key) {
+        return inserts.keys.contains(key) || updates.keys.contains(key);
+    }
+
+    void addInsert(String sql, Object[] data, List<Object> key, int line) {
+        inserts.add(sql, data, key, line);
+    }
+
+    void addUpdate(String sql, Object[] data, List<Object> key, int line) {
+        updates.add(sql, data, key, line);
+    }
+
+    /**
+     * Send all pending rows into DB.
+     */
+    void flush() {
+        inserts.flush();
+        updates.flush();
+    }
+
+    int inserted() {
+        return inserted;
+    }
+
+    int updated() {
+        return updated;
+    }
+
+    /**
+     * Pending rows of one kind of statements.
+     */
+    private class Pending {
+
+        private final boolean isInsert;
+        private final List<Object[]> params = new ArrayList<>();
+        private final List<Integer> lines = new ArrayList<>();
+        private final Set<List<Object>> keys = new HashSet<>();
+        private String sql;
+        private int streams;
+
+        Pending(boolean isInsert) {
+            this.isInsert = isInsert;
+        }
+
+        void add(String sql, Object[] data, List<Object> key, int line) {
+            if (!params.isEmpty() && !sql.equals(this.sql)) {
+                flush();
+            }
+            this.sql = sql;
+            params.add(data);
+            lines.add(line);
+            keys.add(key);
+            for (Object value : data) {
+                if (value instanceof ExternalStream) {
+                    streams++;
+                }
+            }
+            if ((params.size() >= maxSize) || (streams >= MAX_STREAMS)) {
+                flush();
+            }
+        }
+
+        void flush() {
+            if (params.isEmpty()) {
+                return;
+            }
+            if (!isInsert) {
+                inserts.flush();
+            }
+            LOG.trace("Execute batch of [{}] rows: {}", params.size(), sql);
+            try {
+                int[] results = statements.batch(sql, params.toArray(Object[][]::new));
+                if (isInsert) {
+                    inserted += params.size();
+                } else {
+                    for (int result : results) {
+                        if (result == Statement.SUCCESS_NO_INFO) {
+                            updated++;
+                        } else if (result > 0) {
+                            updated += result;
+                        }
+                    }
+                }
+            } catch (SQLException ex) {
+                SQLException cause = ex;
+                if ((ex instanceof BatchUpdateException) && (ex.getNextException() != null)) {
+                    cause = ex.getNextException();
+                }
+                throw new RuntimeException("Error on batch for lines %s: %s".formatted(lines, cause.getMessage()),
+                        ex);
+            } finally {
+                params.clear();
+                lines.clear();
+                keys.clear();
+                streams = 0;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,172 @@
+package dev.walgo.dbseeder.writer;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.dbutils.DbUtils;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Prepared statements, cached by SQL text and kind of statement (with or without generated keys).
+ * <p>
+ * Least recently used statement is closed when cache is full. Statements aren't cached when cache size is less than
+ * 1, so every statement is closed right after execution.
+ * <p>
+ * Values of {@link ExternalStream} are bound as streams, which are closed after statement execution.
+ */
+class StatementCache implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatementCache.class);
+    private static final QueryRunner SQL = new QueryRunner();
+
+    private final Connection connection;
+    private final int maxSize;
+    private final Map<Key, PreparedStatement> statements;
+
+    /**
+     * Key of cached statement.
+     *
+     * @param sql        SQL text
+     * @param returnKeys does statement return generated keys
+     */
+    private record Key(String sql, boolean returnKeys) {
+    }
+
+    StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, PreparedStatement> eldest) {
+                if (size() <= StatementCache.this.maxSize) {
+                    return false;
+                }
+                LOG.trace("Close statement: {}", eldest.getKey().sql());
+                DbUtils.closeQuietly(eldest.getValue());
+                return true;
+            }
+        };
+    }
+
+    private PreparedStatement prepare(String sql, boolean returnKeys) throws SQLException {
+        Key key = new Key(sql, returnKeys);
+        PreparedStatement stmt = statements.get(key);
+        if ((stmt == null) || stmt.isClosed()) {
+            stmt = returnKeys
+                    ? connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                    : connection.prepareStatement(sql);
+            if (maxSize > 0) {
+                statements.put(key, stmt);
+            }
+        }
+        return stmt;
+    }
+
+    private void release(PreparedStatement stmt, List<Closeable> streams) throws SQLException {
+        streams.forEach(it -> {
+            try {
+                it.close();
+            } catch (Exception ex) {
+                LOG.warn("Can't close stream of external value", ex);
+            }
+        });
+        if (maxSize < 1) {
+            stmt.close();
+        }
+    }
+
+    private void fill(PreparedStatement stmt, Object[] params, List<Closeable> streams) throws SQLException {
+        Object[] values = params;
+        for (int i = 0; i < params.length; i++) {
+            if (params[i] instanceof ExternalStream) {
+                if (values == params) {
+                    values = params.clone();
+                }
+                values[i] = null;
+            }
+        }
+        SQL.fillStatement(stmt, values);
+        if (values != params) {
+            for (int i = 0; i < params.length; i++) {
+                if (params[i] instanceof ExternalStream stream) {
+                    streams.add(stream.bind(stmt, i + 1));
+                }
+            }
+        }
+    }
+
+    <T> T query(String sql, ResultSetHandler<T> handler, Object... params) throws SQLException {
+        PreparedStatement stmt = prepare(sql, false);
+        List<Closeable> streams = new ArrayList<>();
+        try {
+            fill(stmt, params, streams);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return handler.handle(rs);
+            }
+        } finally {
+            release(stmt, streams);
+        }
+    }
+
+    <T> T insert(String sql, ResultSetHandler<T> handler, Object... params) throws SQLException {
+        PreparedStatement stmt = prepare(sql, true);
+        List<Closeable> streams = new ArrayList<>();
+        try {
+            fill(stmt, params, streams);
+            stmt.executeUpdate();
+            try (ResultSet rs = stmt.getGeneratedKeys()) {
+                return handler.handle(rs);
+            }
+        } finally {
+            release(stmt, streams);
+        }
+    }
+
+    int update(String sql, Object... params) throws SQLException {
+        PreparedStatement stmt = prepare(sql, false);
+        List<Closeable> streams = new ArrayList<>();
+        try {
+            fill(stmt, params, streams);
+            return stmt.executeUpdate();
+        } finally {
+            release(stmt, streams);
+        }
+    }
+
+    int[] batch(String sql, Object[][] params) throws SQLException {
+        PreparedStatement stmt = prepare(sql, false);
+        List<Closeable> streams = new ArrayList<>();
+        try {
+            for (Object[] row : params) {
+                fill(stmt, row, streams);
+                stmt.addBatch();
+            }
+            return stmt.executeBatch();
+        } finally {
+            if (maxSize > 0) {
+                stmt.clearBatch();
+            }
+            release(stmt, streams);
+        }
+    }
+
+    /**
+     * Close all cached statements.
+     */
+    @Override
+    public void close() {
+        statements.values().forEach(DbUtils::closeQuietly);
+        statements.clear();
+    }
+
+}
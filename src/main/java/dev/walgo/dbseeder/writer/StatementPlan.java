@@ -0,0 +1,149 @@
+package dev.walgo.dbseeder.writer;
+
+import dev.walgo.dbseeder.data.DataRow;
+import dev.walgo.dbseeder.data.SeedInfo;
+import dev.walgo.dbseeder.db.Database;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * SQL statements of one table, compiled once for rows with placeholders only.
+ * <p>
+ * Rows with direct values (<b>!!</b>) or omitted values (see {@link SeedInfo#ignoreOmits()}) have their own SQL, so
+ * it's generated for every such row by {@link SQLGenerator}.
+ */
+class StatementPlan {
+
+    private final SQLGenerator generator;
+    private final SeedInfo info;
+    private final int rowSize;
+    private final boolean hasUpdateFields;
+    private Template insert;
+    private Template update;
+    private Template checkRecord;
+    private Template upsert;
+
+    /**
+     * Compiled statement.
+     *
+     * @param sql       SQL with placeholders
+     * @param fields    fields of placeholders
+     * @param positions positions of placeholder values in row
+     */
+    private record Template(String sql, List<RequestInfo.Field> fields, int[] positions) {
+
+        RequestInfo bind(DataRow data) {
+            List<Object> values = new ArrayList<>(positions.length);
+            for (int pos : positions) {
+                values.add(data.values().get(pos));
+            }
+            return new RequestInfo.Builder()
+                    .sql(sql)
+                    .addAllFields(fields)
+                    .addAllData(values)
+                    .build();
+        }
+    }
+
+    StatementPlan(SQLGenerator generator, SeedInfo info) {
+        this.generator = generator;
+        this.info = info;
+        int size = 0;
+        for (SeedInfo.FieldInfo field : info.getFields().values()) {
+            size = Math.max(size, field.index + 1);
+        }
+        for (Integer idx : info.getKeys().values()) {
+            size = Math.max(size, idx + 1);
+        }
+        this.rowSize = size;
+        this.hasUpdateFields = info.getFields().keySet().stream().anyMatch(it -> !info.getKeys().containsKey(it));
+    }
+
+    /**
+     * Compile statement via generator.
+     * <p>
+     * Statement is generated for the row with position numbers as values, so every value is a placeholder and
+     * positions of bind values can be obtained from request data.
+     *
+     * @param request generator method
+     * @return compiled statement or null if generator doesn't return statement
+     */
+    private Template compile(Function<DataRow, RequestInfo> request) {
+        DataRow template = new DataRow(0);
+        for (int i = 0; i < rowSize; i++) {
+            template.addValue(i);
+        }
+        RequestInfo result = request.apply(template);
+        if (result == null) {
+            return null;
+        }
+        int[] positions = new int[result.data().size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = (Integer) result.data().get(i);
+        }
+        return new Template(result.sql(), result.fields(), positions);
+    }
+
+    /**
+     * Can row use compiled statements?
+     *
+     * @param data row
+     * @return true if all row values are placeholders
+     */
+    private boolean isCompilable(DataRow data) {
+        for (Object value : data.values()) {
+            if (value == null) {
+                if (info.ignoreOmits()) {
+                    return false;
+                }
+            } else if ((value instanceof String stringValue)
+                    && stringValue.startsWith(SQLGenerator.DIRECT_VALUE_SIGN)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    RequestInfo insert(DataRow data) {
+        if (!isCompilable(data)) {
+            return generator.insert(info, data);
+        }
+        if (insert == null) {
+            insert = compile(row -> generator.insert(info, row));
+        }
+        return insert.bind(data);
+    }
+
+    RequestInfo update(DataRow data) {
+        // nothing to update is reported by generator for every row
+        if (!hasUpdateFields || !isCompilable(data)) {
+            return generator.update(info, data);
+        }
+        if (update == null) {
+            update = compile(row -> generator.update(info, row));
+        }
+        return update.bind(data);
+    }
+
+    RequestInfo checkRecord(DataRow data) {
+        if (!isCompilable(data)) {
+            return generator.checkRecord(info, data);
+        }
+        if (checkRecord == null) {
+            checkRecord = compile(row -> generator.checkRecord(info, row));
+        }
+        return checkRecord.bind(data);
+    }
+
+    RequestInfo upsert(DataRow data, Database database) {
+        if (!isCompilable(data)) {
+            return generator.upsert(info, data, database);
+        }
+        if (upsert == null) {
+            upsert = compile(row -> generator.upsert(info, row, database));
+        }
+        return upsert.bind(data);
+    }
+
+}
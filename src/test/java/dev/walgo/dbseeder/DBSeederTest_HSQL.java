@@ -1,9 +1,19 @@
 package dev.walgo.dbseeder;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import dev.walgo.dbseeder.data.ActionType;
+import dev.walgo.dbseeder.data.DataRow;
+import dev.walgo.dbseeder.data.ReferenceInfo;
 import dev.walgo.dbseeder.data.SeedInfo;
+import dev.walgo.dbseeder.writer.DBWriter;
+import dev.walgo.dbseeder.writer.RequestInfo;
+import dev.walgo.dbseeder.writer.SeedSession;
+import dev.walgo.dbseeder.writer.StagingMergeWriter;
+import dev.walgo.walib.db.ColumnInfo;
+import dev.walgo.walib.db.TableInfo;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -11,23 +21,37 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.math.BigDecimal;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.Blob;
 import java.sql.Connection;
 import java.sql.Date;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Time;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.handlers.MapListHandler;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.apache.commons.lang3.tuple.Pair;
+import org.hsqldb.jdbc.JDBCDataSource;
 import org.hsqldb.cmdline.SqlFile;
 import org.hsqldb.cmdline.SqlToolError;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 public class DBSeederTest_HSQL {
 
@@ -111,6 +135,111 @@ public class DBSeederTest_HSQL {
         assertThat(info1.getData()).hasSize(2);
     }
 
+    @Test
+    public void testCsvQuotes() {
+        String csv = """
+                key; value; items[]
+                table: test; keys: key
+
+                # comment
+                k1 ;  "a;""b"" " ; x | "y|z" ||
+                k2; "line 1
+                line 2"; ""
+                  k3 ; plain "text" ;\r
+                """;
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceDir("data")
+                .csvQuote('"')
+                .build();
+        SeedInfo info = new DBSeeder(settings).read("quotes.csv",
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+        assertThat(info.getData()).extracting(DataRow::sourceNumber).containsExactly(5, 6, 8);
+        assertThat(info.getData().get(0).values()).containsExactly("k1", "a;\"b\" ", List.of("x", "y|z"));
+        assertThat(info.getData().get(1).values()).containsExactly("k2", "line 1\nline 2", List.of(""));
+        assertThat(info.getData().get(2).values()).containsExactly("k3", "plain \"text\"", List.of());
+    }
+
+    @Test
+    public void testChunkedRead(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("chunked.csv");
+        for (Character quote : new Character[] {'"', null}) {
+            StringBuilder csv = new StringBuilder("key; value; items[]\ntable: test; keys: key\n");
+            for (int i = 0; i < 200; i++) {
+                switch (i % 4) {
+                    case 0 -> csv.append(quote != null
+                            ? "k%s; \"value;%s\nnext \"\"line\"\"\" ; a|\"b|c\"\r\n".formatted(i, i)
+                            : "k%s; \"value %s\" ; a|\"b\"\r\n".formatted(i, i));
+                    case 1 -> csv.append("# comment \"\n\n");
+                    case 2 -> csv.append("k%s; plain %s; x | y\r".formatted(i, i));
+                    default -> csv.append("  k%s ; \"\" ; \n".formatted(i));
+                }
+            }
+            Files.writeString(file, csv);
+            DBSSettings.Builder builder = new DBSSettings.Builder()
+                    .connection(conn)
+                    .dbSchema("PUBLIC")
+                    .sourceDir(dir.toString())
+                    .csvQuote(quote);
+            SeedInfo plain;
+            try (InputStream stream = Files.newInputStream(file)) {
+                plain = new DBSeeder(builder.build()).read("chunked.csv", stream);
+            }
+            SeedInfo chunked = new DBSeeder(builder.csvChunkSize(100).build()).read("chunked.csv", file);
+            assertThat(plain.getData()).hasSize(150);
+            assertThat(chunked.getData()).hasSameSizeAs(plain.getData());
+            for (int i = 0; i < plain.getData().size(); i++) {
+                assertThat(chunked.getData().get(i).sourceNumber()).isEqualTo(plain.getData().get(i).sourceNumber());
+                assertThat(chunked.getData().get(i).values()).isEqualTo(plain.getData().get(i).values());
+            }
+        }
+    }
+
+    @Test
+    public void testParallelRead() {
+        DBSSettings.Builder builder = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data");
+        DBSeeder plain = new DBSeeder(builder.build());
+        plain.read();
+        DBSeeder parallel = new DBSeeder(builder.readParallelism(4).build());
+        parallel.read();
+        assertThat(parallel.infos).extracting(SeedInfo::getResourceName)
+                .containsExactlyElementsOf(plain.infos.stream().map(SeedInfo::getResourceName).toList());
+        for (int i = 0; i < plain.infos.size(); i++) {
+            assertThat(parallel.infos.get(i).getData()).hasSameSizeAs(plain.infos.get(i).getData());
+        }
+    }
+
+    @Test
+    @Order(11)
+    public void testLevels() {
+        SeedInfo dict1 = seedInfo("dict_1");
+        SeedInfo dict2 = seedInfo("dict_2");
+        SeedInfo table1 = seedInfo("table_1", "dict_1", "dict_2");
+        SeedInfo dict1Next = seedInfo("DICT_1");
+        SeedInfo table2 = seedInfo("table_2", "dict_2");
+        SeedInfo table3 = seedInfo("table_3", "table_1");
+
+        List<List<SeedInfo>> levels = DBSeeder.levels(List.of(dict1, dict2, table1, dict1Next, table2, table3));
+        assertThat(levels).containsExactly(
+                List.of(dict1, dict2),
+                List.of(table1, table2),
+                List.of(dict1Next, table3));
+    }
+
+    private static SeedInfo seedInfo(String tableName, String... references) {
+        SeedInfo info = new SeedInfo();
+        info.setTableName(tableName);
+        for (String ref : references) {
+            info.getReferences().put(ref + "_id", new ReferenceInfo().setTableName(ref));
+        }
+        return info;
+    }
+
     @Test
     @Order(20)
     public void testWrite() throws Exception {
@@ -352,4 +481,847 @@ public class DBSeederTest_HSQL {
 
     }
 
+    @Test
+    @Order(30)
+    public void testWriteDataSource() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl(DB_URL);
+        dataSource.setUser(DB_USER);
+        DBSSettings settings = new DBSSettings.Builder()
+                .dataSource(dataSource)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        Pair<Integer, Integer> result = seeder.write(seeder.infos.get(1), DBWriter.class);
+        assertThat(result).isEqualTo(Pair.of(2, 0));
+
+        List<Map<String, Object>> result1 = runner.query(conn, "SELECT * from test_table_1 ORDER BY id",
+                new MapListHandler());
+        assertThat(result1).hasSize(2);
+        assertThat(result1.get(0).get("enum_field")).isEqualTo("TEST1");
+        assertThat(result1.get(1).get("enum_field")).isEqualTo("TEST2");
+    }
+
+    @Test
+    @Order(31)
+    public void testCommitMode() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        for (CommitMode mode : List.of(CommitMode.ROWS, CommitMode.RUN)) {
+            runner.execute(conn, "DELETE from test_table_3");
+            runner.execute(conn, "DELETE from test_table_2");
+            runner.execute(conn, "DELETE from test_table_1");
+
+            DBSSettings settings = new DBSSettings.Builder()
+                    .connection(conn)
+                    .dbSchema("PUBLIC")
+                    .sourceType(SourceType.CSV)
+                    .sourceDir("data")
+                    .commitMode(mode)
+                    .commitInterval(1)
+                    .putOnRow("test_table_1", (info, row) -> {
+                        if ("TEST2".equals(info.getFieldValue("enum_field", row))) {
+                            throw new IllegalStateException("Test error");
+                        }
+                    })
+                    .build();
+            DBSeeder seeder = new DBSeeder(settings);
+            seeder.read();
+            assertThatThrownBy(() -> seeder.write(seeder.infos.get(1), DBWriter.class))
+                    .hasMessage("Test error");
+            assertThat(conn.getAutoCommit()).isTrue();
+
+            List<Map<String, Object>> result = runner.query(conn, "SELECT * from test_table_1", new MapListHandler());
+            // committed rows are kept, the rest is rolled back
+            assertThat(result).hasSize(mode == CommitMode.ROWS ? 1 : 0);
+        }
+    }
+
+    @Test
+    @Order(31)
+    public void testParallelWrite(@TempDir Path dir) throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        // independent tables are written on the same level
+        Files.writeString(dir.resolve("01--parallel_2.csv"), """
+                enum_field_2;big_field_2
+                table: test_table_2; keys: enum_field_2; action: insert
+
+                P21;parallel_21
+                """);
+        Files.writeString(dir.resolve("02--parallel_1.csv"), """
+                enum_field;big_field
+                table: test_table_1; keys: enum_field; action: modify
+
+                P1;parallel_1
+                P2;parallel_2
+                """);
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl(DB_URL);
+        dataSource.setUser(DB_USER);
+        DBSSettings settings = new DBSSettings.Builder()
+                .dataSource(dataSource)
+                .parallelism(2)
+                .commitMode(CommitMode.TABLE)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir(dir.toString())
+                .putOnRow("test_table_1", (info, row) -> {
+                    // keep writing after the other table fails
+                    long end = System.nanoTime() + 200_000_000L;
+                    while (System.nanoTime() < end) {
+                        Thread.onSpinWait();
+                    }
+                })
+                .putOnRow("test_table_2", (info, row) -> {
+                    throw new IllegalStateException("Test error");
+                })
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        assertThat(DBSeeder.levels(seeder.infos)).hasSize(1);
+        assertThatThrownBy(seeder::write).hasMessage("Test error");
+
+        // connection of running worker isn't closed until it finishes its table
+        List<Map<String, Object>> result1 = runner.query(conn, "SELECT * from test_table_1", new MapListHandler());
+        assertThat(result1).extracting(it -> it.get("enum_field")).containsExactlyInAnyOrder("P1", "P2");
+        List<Map<String, Object>> result2 = runner.query(conn, "SELECT * from test_table_2", new MapListHandler());
+        assertThat(result2).isEmpty();
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+    @Test
+    @Order(31)
+    public void testStagingMerge(@TempDir Path dir) throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        DBSSettings.Builder builder = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data");
+        DBSeeder seeder = new DBSeeder(builder.build());
+        seeder.read();
+        assertThat(seeder.write(seeder.infos.get(1), StagingMergeWriter.class)).isEqualTo(Pair.of(2, 0));
+        assertThat(seeder.write(seeder.infos.get(1), StagingMergeWriter.class)).isEqualTo(Pair.of(0, 2));
+
+        List<Map<String, Object>> result = runner.query(conn, "SELECT * from test_table_1 ORDER BY id",
+                new MapListHandler());
+        assertThat(result).hasSize(2);
+        assertThat(result.get(0).get("enum_field")).isEqualTo("TEST1");
+        assertThat(result.get(0).get("char_field")).isEqualTo("test_ch1  ");
+        assertThat(result.get(0).get("decimal_field_2")).isEqualTo(new BigDecimal("45.33"));
+        assertThat(result.get(1).get("enum_field")).isEqualTo("TEST2");
+
+        // unmatched references are reported at once, nothing is written
+        Path file = dir.resolve("01--staging.csv");
+        String header = """
+                enum_field_2;big_field_2;test_table_1_id
+                table: test_table_2; keys: enum_field_2; \
+                references: test_table_1_id = test_table_1(enum_field); action: insert
+
+                """;
+        Files.writeString(file, header + """
+                S1;staging_1;TEST2
+                S2;staging_2;MISSING1
+                S3;staging_3;MISSING2
+                """);
+        DBSeeder seeder2 = new DBSeeder(builder.sourceDir(dir.toString()).build());
+        seeder2.read();
+        assertThatThrownBy(() -> seeder2.write(seeder2.infos.get(0), StagingMergeWriter.class))
+                .hasMessageContaining("line [5]: value [MISSING1]")
+                .hasMessageContaining("line [6]: value [MISSING2]");
+        assertThat(runner.query(conn, "SELECT * from test_table_2", new MapListHandler())).isEmpty();
+
+        Files.writeString(file, header + """
+                S1;staging_1;TEST2
+                S2;staging_2;TEST1
+                """);
+        DBSeeder seeder3 = new DBSeeder(builder.build());
+        seeder3.read();
+        assertThat(seeder3.write(seeder3.infos.get(0), StagingMergeWriter.class)).isEqualTo(Pair.of(2, 0));
+        List<Map<String, Object>> result2 = runner.query(conn, "SELECT * from test_table_2 ORDER BY id",
+                new MapListHandler());
+        assertThat(result2).extracting(it -> it.get("test_table_1_id"))
+                .containsExactly(result.get(1).get("id"), result.get(0).get("id"));
+
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+    @Test
+    @Order(31)
+    public void testCheckReferences(@TempDir Path dir) throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+        runner.execute(conn, "INSERT INTO test_table_1 (enum_field) VALUES ('TEST1')");
+
+        Files.writeString(dir.resolve("01--refs.csv"), """
+                enum_field_2;test_table_1_id
+                table: test_table_2; keys: enum_field_2; \
+                references: test_table_1_id = test_table_1(enum_field); action: insert
+
+                R1;TEST1
+                R2;MISSING1
+                R3;TEST1
+                R4;MISSING2
+                """);
+        DBSSettings.Builder builder = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir(dir.toString())
+                .referenceCache(true);
+        DBSeeder seeder = new DBSeeder(builder.build());
+        seeder.read();
+        // all missed values are reported before writing
+        assertThatThrownBy(() -> seeder.write(seeder.infos.get(0), DBWriter.class))
+                .hasMessageContaining("line [5]: value [MISSING1]")
+                .hasMessageContaining("line [7]: value [MISSING2]");
+        assertThat(runner.query(conn, "SELECT * from test_table_2", new MapListHandler())).isEmpty();
+
+        // listener can change row data, so values are checked on writing of every row
+        DBSeeder seeder2 = new DBSeeder(builder.putOnRow("test_table_2", (info, row) -> { }).build());
+        seeder2.read();
+        assertThatThrownBy(() -> seeder2.write(seeder2.infos.get(0), DBWriter.class))
+                .hasMessageContaining("Value [MISSING1] not found");
+        assertThat(runner.query(conn, "SELECT * from test_table_2", new MapListHandler())).hasSize(1);
+
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+    @Test
+    @Order(31)
+    public void testBatchInterleaved(@TempDir Path dir) throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+
+        // new and existing rows are interleaved, the last row updates row inserted by the seed
+        Files.writeString(dir.resolve("01--batch.csv"), """
+                enum_field;big_field
+                table: test_table_1; keys: enum_field; action: modify
+
+                N1;new_1
+                E1;updated_1
+                N2;new_2
+                E2;updated_2
+                N3;new_3
+                E3;updated_3
+                N2;updated_n2
+                """);
+        for (ExistenceCheck check : ExistenceCheck.values()) {
+            runner.execute(conn, "DELETE from test_table_1");
+            runner.execute(conn, "INSERT INTO test_table_1 (enum_field, big_field) VALUES ('E1', 'old'), "
+                    + "('E2', 'old'), ('E3', 'old')");
+            DBSSettings settings = new DBSSettings.Builder()
+                    .connection(conn)
+                    .dbSchema("PUBLIC")
+                    .sourceType(SourceType.CSV)
+                    .sourceDir(dir.toString())
+                    .batchSize(3)
+                    .existenceCheck(check)
+                    .build();
+            DBSeeder seeder = new DBSeeder(settings);
+            seeder.read();
+            assertThat(seeder.write(seeder.infos.get(0), DBWriter.class)).as(check.name()).isEqualTo(Pair.of(3, 4));
+
+            List<Map<String, Object>> result = runner.query(conn,
+                    "SELECT enum_field, big_field from test_table_1 ORDER BY enum_field", new MapListHandler());
+            assertThat(result).extracting(it -> it.get("enum_field"))
+                    .containsExactly("E1", "E2", "E3", "N1", "N2", "N3");
+            assertThat(result).extracting(it -> it.get("big_field"))
+                    .containsExactly("updated_1", "updated_2", "updated_3", "new_1", "updated_n2", "new_3");
+        }
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+    @Test
+    @Order(31)
+    public void testExistenceCheck(@TempDir Path dir) throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+
+        // keys differ from stored values by CHAR padding and numeric scale only
+        Files.writeString(dir.resolve("01--keys.csv"), """
+                char_field;decimal_field_2;big_field
+                table: test_table_1; keys: char_field, decimal_field_2; action: modify
+
+                k1;1.5;updated_1
+                k2;2;inserted_2
+                k2;2.00;updated_2
+                """);
+        List<List<Map<String, Object>>> results = new ArrayList<>();
+        for (ExistenceCheck check : ExistenceCheck.values()) {
+            runner.execute(conn, "DELETE from test_table_1");
+            runner.execute(conn,
+                    "INSERT INTO test_table_1 (char_field, decimal_field_2, big_field) VALUES ('k1', 1.50, 'old')");
+            DBSSettings settings = new DBSSettings.Builder()
+                    .connection(conn)
+                    .dbSchema("PUBLIC")
+                    .sourceType(SourceType.CSV)
+                    .sourceDir(dir.toString())
+                    .existenceCheck(check)
+                    .build();
+            DBSeeder seeder = new DBSeeder(settings);
+            seeder.read();
+            assertThat(seeder.write(seeder.infos.get(0), DBWriter.class)).as(check.name()).isEqualTo(Pair.of(1, 2));
+
+            List<Map<String, Object>> result = runner.query(conn,
+                    "SELECT char_field, decimal_field_2, big_field from test_table_1 ORDER BY char_field",
+                    new MapListHandler());
+            assertThat(result).extracting(it -> it.get("big_field")).containsExactly("updated_1", "updated_2");
+            results.add(result);
+        }
+        assertThat(results.get(1)).isEqualTo(results.get(0));
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+    @Test
+    @Order(31)
+    public void testNativeUpsert() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+        runner.execute(conn, "ALTER TABLE test_table_1 ADD CONSTRAINT uq_test_table_1 UNIQUE (enum_field)");
+        try {
+            runner.execute(conn,
+                    "INSERT INTO test_table_1 (enum_field, big_field, read_only) VALUES ('TEST1', 'old', 1)");
+            Number id = runner.query(conn, "SELECT id from test_table_1", new ScalarHandler<>());
+
+            DBSSettings settings = new DBSSettings.Builder()
+                    .connection(conn)
+                    .dbSchema("PUBLIC")
+                    .sourceType(SourceType.CSV)
+                    .sourceDir("data")
+                    .nativeUpsert(true)
+                    .build();
+            DBSeeder seeder = new DBSeeder(settings);
+            seeder.read();
+            // upserted rows are counted as updated
+            assertThat(seeder.write(seeder.infos.get(1), DBWriter.class)).isEqualTo(Pair.of(0, 2));
+
+            List<Map<String, Object>> result = runner.query(conn, "SELECT * from test_table_1 ORDER BY enum_field",
+                    new MapListHandler());
+            assertThat(result).hasSize(2);
+            assertThat(result.get(0).get("id")).isEqualTo(id);
+            assertThat(result.get(0).get("big_field")).isEqualTo("test_1");
+            assertThat(result.get(0).get("read_only")).isEqualTo(10);
+            assertThat(result.get(1).get("enum_field")).isEqualTo("TEST2");
+            assertThat(result.get(1).get("big_field")).isEqualTo("test_2");
+        } finally {
+            runner.execute(conn, "DELETE from test_table_1");
+            runner.execute(conn, "ALTER TABLE test_table_1 DROP CONSTRAINT uq_test_table_1");
+        }
+    }
+
+    @Test
+    @Order(31)
+    public void testSkipUnchanged(@TempDir Path dir) throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        // values, which aren't changed by DB on write
+        Files.writeString(dir.resolve("01--unchanged.csv"), """
+                enum_field;big_field;read_only;char_field;decimal_field_2;date_field
+                table: test_table_1; keys: enum_field; action: modify
+
+                TEST1;test_1;10;test_ch1;45.33;2023-05-07
+                TEST2;test_2;11;test_ch2;46.3;2023-05-08
+                """);
+        DBSSettings.Builder builder = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir(dir.toString());
+        DBSeeder seeder = new DBSeeder(builder.build());
+        seeder.read();
+        assertThat(seeder.write(seeder.infos.get(0), DBWriter.class)).isEqualTo(Pair.of(2, 0));
+
+        for (int limit : new int[] {0, 1}) {
+            runner.execute(conn,
+                    "UPDATE test_table_1 SET big_field = 'changed', read_only = 10 WHERE enum_field = 'TEST1'");
+            DBSSettings settings = builder
+                    .skipUnchanged(true)
+                    .skipUnchangedLimit(limit)
+                    .putOnRow("test_table_1", (info, row) -> {
+                        // changed after loading of current values, so it's kept by update of changed columns only
+                        try {
+                            runner.execute(conn, "UPDATE test_table_1 SET read_only = 99 WHERE enum_field = 'TEST1'");
+                        } catch (SQLException ex) {
+                            throw new RuntimeException(ex);
+                        }
+                    })
+                    .build();
+            DBSeeder seeder2 = new DBSeeder(settings);
+            seeder2.read();
+            Pair<Integer, Integer> result = seeder2.write(seeder2.infos.get(0), DBWriter.class);
+
+            List<Map<String, Object>> rows = runner.query(conn, "SELECT * from test_table_1 ORDER BY enum_field",
+                    new MapListHandler());
+            assertThat(rows).hasSize(2);
+            assertThat(rows.get(0).get("big_field")).isEqualTo("test_1");
+            assertThat(rows.get(1).get("big_field")).isEqualTo("test_2");
+            assertThat(rows.get(1).get("read_only")).isEqualTo(11);
+            assertThat(rows.get(1).get("char_field")).isEqualTo("test_ch2  ");
+            assertThat(rows.get(1).get("decimal_field_2")).isEqualTo(new BigDecimal("46.30"));
+            if (limit == 0) {
+                // only changed row is updated, only by changed column
+                assertThat(result).isEqualTo(Pair.of(0, 1));
+                assertThat(rows.get(0).get("read_only")).isEqualTo(99);
+            } else {
+                // rows above the limit are updated by all columns
+                assertThat(result.getRight()).isBetween(1, 2);
+            }
+        }
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+    @Test
+    @Order(32)
+    public void testStateTable() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .stateTable("dbseeder_state")
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        assertThat(seeder.infos).hasSize(4);
+        assertThat(seeder.write(seeder.infos.get(1), DBWriter.class)).isEqualTo(Pair.of(2, 0));
+
+        DBSeeder seeder2 = new DBSeeder(settings);
+        seeder2.read();
+        // resources with external values are always read
+        assertThat(seeder2.infos).extracting(SeedInfo::getResourceName)
+                .containsExactly("01--test.csv", "02--test_table_2.csv", "03--test_table_3.csv");
+        assertThat(seeder2.getUnchanged()).extracting(SeedInfo::getTableName).containsExactly("test_table_1");
+
+        List<Map<String, Object>> state = runner.query(conn, "SELECT * from dbseeder_state", new MapListHandler());
+        assertThat(state).hasSize(1);
+        assertThat(state.get(0).get("resource_name")).isEqualTo("01--test_table_1.csv");
+        assertThat(state.get(0).get("action")).isEqualTo("MODIFY");
+
+        // reference to external value, split by chunks of reading
+        SeedState seedState = new SeedState(settings);
+        byte[] content = new byte[64 * 1024 + 1];
+        Arrays.fill(content, (byte) 'a');
+        content[64 * 1024 - 1] = '@';
+        content[64 * 1024] = '@';
+        assertThat(seedState.hash(content)).isNull();
+        content[64 * 1024] = 'a';
+        assertThat(seedState.hash(content)).isNotNull();
+        runner.execute(conn, "DROP TABLE dbseeder_state");
+    }
+
+    @Test
+    @Order(32)
+    public void testStateTableFailure() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .stateTable("dbseeder_state")
+                .commitMode(CommitMode.TABLE)
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        // saving of hash fails after data is committed
+        runner.execute(conn, "DROP TABLE dbseeder_state");
+        assertThatThrownBy(() -> seeder.write(seeder.infos.get(1), DBWriter.class))
+                .hasMessageContaining("DBSEEDER_STATE");
+        assertThat(runner.query(conn, "SELECT COUNT(*) from test_table_1", new ScalarHandler<Number>()).intValue())
+                .isEqualTo(2);
+
+        // resource isn't treated as unchanged by the next run
+        DBSeeder seeder2 = new DBSeeder(settings);
+        seeder2.read();
+        assertThat(seeder2.getUnchanged()).isEmpty();
+        assertThat(seeder2.infos).extracting(SeedInfo::getResourceName).contains("01--test_table_1.csv");
+        assertThat(seeder2.write(seeder2.infos.get(1), DBWriter.class)).isEqualTo(Pair.of(0, 2));
+        runner.execute(conn, "DROP TABLE dbseeder_state");
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+    @Test
+    @Order(33)
+    public void testMetadataSnapshot(@TempDir Path dir) throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        Path file = dir.resolve("metadata.json");
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .metadataSnapshot(file.toString())
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        assertThat(seeder.write(seeder.infos.get(1), DBWriter.class)).isEqualTo(Pair.of(2, 0));
+        assertThat(file).exists();
+        assertThat(Files.readString(file)).contains("TEST_TABLE_1");
+
+        // valid snapshot is reused
+        FileTime saved = FileTime.fromMillis(0);
+        Files.setLastModifiedTime(file, saved);
+        seeder = new DBSeeder(settings);
+        seeder.read();
+        runner.execute(conn, "DELETE from test_table_1");
+        assertThat(seeder.write(seeder.infos.get(1), DBWriter.class)).isEqualTo(Pair.of(2, 0));
+        assertThat(Files.getLastModifiedTime(file)).isEqualTo(saved);
+
+        // snapshot is rewritten after schema change
+        runner.execute(conn, "ALTER TABLE test_table_3 ADD COLUMN snapshot_col INT");
+        try {
+            seeder = new DBSeeder(settings);
+            seeder.read();
+            runner.execute(conn, "DELETE from test_table_1");
+            assertThat(seeder.write(seeder.infos.get(1), DBWriter.class)).isEqualTo(Pair.of(2, 0));
+            assertThat(Files.getLastModifiedTime(file)).isNotEqualTo(saved);
+            assertThat(Files.readString(file)).contains("SNAPSHOT_COL");
+        } finally {
+            runner.execute(conn, "ALTER TABLE test_table_3 DROP COLUMN snapshot_col");
+        }
+    }
+
+    @Test
+    @Order(34)
+    public void testTargetedMetadata() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        JDBCDataSource dataSource = new JDBCDataSource();
+        dataSource.setUrl(DB_URL);
+        dataSource.setUser(DB_USER);
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dataSource(dataSource)
+                .parallelism(2)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .targetedMetadata(true)
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        SeedSession session = new SeedSession(seeder.infos.subList(1, 2), settings);
+        assertThat(session.getTables()).containsOnlyKeys("test_table_1");
+        assertThat(session.getTables().get("test_table_1").getFields()).containsKey("id");
+
+        assertThat(seeder.write(seeder.infos.get(1), DBWriter.class)).isEqualTo(Pair.of(2, 0));
+    }
+
+    @Test
+    @Order(35)
+    public void testExternalCache() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .externalCacheSize(1024)
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        SeedInfo info = seeder.infos.get(1);
+        int idx = info.getFields().get("big_field").index;
+        info.getData().forEach(row -> row.values().set(idx, "@@files/testFile.txt"));
+        assertThat(seeder.write(info, DBWriter.class)).isEqualTo(Pair.of(2, 0));
+
+        String content;
+        try (InputStream stream = getClass().getClassLoader().getResourceAsStream("data/files/testFile.txt")) {
+            content = new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        List<Map<String, Object>> result = runner.query(conn, "SELECT big_field from test_table_1",
+                new MapListHandler());
+        assertThat(result).extracting(it -> it.get("big_field")).containsExactly(content, content);
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+    @Test
+    @Order(36)
+    public void testStreamExternalValues() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .streamExternalValues(true)
+                .batchSize(10)
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        SeedInfo info = seeder.infos.get(1);
+        int bigIdx = info.getFields().get("big_field").index;
+        int binaryIdx = info.getFields().get("varbinary_field").index;
+        info.getData().forEach(row -> {
+            row.values().set(bigIdx, "@@files/testFile.txt");
+            row.values().set(binaryIdx, "@@files/testFile.txt");
+        });
+        assertThat(seeder.write(info, DBWriter.class)).isEqualTo(Pair.of(2, 0));
+
+        byte[] content;
+        try (InputStream stream = getClass().getClassLoader().getResourceAsStream("data/files/testFile.txt")) {
+            content = stream.readAllBytes();
+        }
+        List<Map<String, Object>> result = runner.query(conn, "SELECT big_field, varbinary_field from test_table_1",
+                new MapListHandler());
+        assertThat(result).hasSize(2);
+        for (Map<String, Object> row : result) {
+            assertThat(row.get("big_field")).isEqualTo(new String(content, StandardCharsets.UTF_8));
+            assertThat((byte[]) row.get("varbinary_field")).isEqualTo(content);
+        }
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+    @Test
+    @Order(37)
+    public void testBinaryEncodings(@TempDir Path dir) throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        SeedInfo info = seeder.infos.get(1);
+        int idx = info.getFields().get("varbinary_field").index;
+        info.getData().get(0).values().set(idx, "\\x000aFF");
+        info.getData().get(1).values().set(idx, "base64:AAEC");
+        assertThat(seeder.write(info, DBWriter.class)).isEqualTo(Pair.of(2, 0));
+
+        List<Map<String, Object>> result = runner.query(conn,
+                "SELECT varbinary_field from test_table_1 ORDER BY enum_field", new MapListHandler());
+        assertThat((byte[]) result.get(0).get("varbinary_field")).containsExactly(0x00, 0x0a, 0xff);
+        assertThat((byte[]) result.get(1).get("varbinary_field")).containsExactly(0, 1, 2);
+        runner.execute(conn, "DELETE from test_table_1");
+
+        // large binary column and external file, which isn't valid UTF-8
+        byte[] content = {(byte) 0xff, (byte) 0xfe, 0x00, (byte) 0x80, 'a'};
+        Files.createDirectory(dir.resolve("files"));
+        Files.write(dir.resolve("files/binary.dat"), content);
+        Files.writeString(dir.resolve("01--blob.csv"), """
+                enum_field;varbinary_field;blob_field
+                table: test_table_1; keys: enum_field; action: insert
+
+                B1;\\x01;\\x000aFF
+                B2;\\x01;base64:AAEC
+                B3;\\x01;101
+                B4;@@files/binary.dat;@@files/binary.dat
+                """);
+        DBSSettings blobSettings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir(dir.toString())
+                .build();
+        DBSeeder blobSeeder = new DBSeeder(blobSettings);
+        blobSeeder.read();
+        assertThat(blobSeeder.write(blobSeeder.infos.get(0), DBWriter.class)).isEqualTo(Pair.of(4, 0));
+        List<byte[]> blobs = new ArrayList<>();
+        for (Map<String, Object> row : runner.query(conn, "SELECT blob_field from test_table_1 ORDER BY enum_field",
+                new MapListHandler())) {
+            Blob blob = (Blob) row.get("blob_field");
+            blobs.add(blob.getBytes(1, (int) blob.length()));
+        }
+        assertThat(blobs).containsExactly(new byte[] {0x00, 0x0a, (byte) 0xff}, new byte[] {0, 1, 2},
+                new byte[] {5}, content);
+        assertThat(runner.query(conn, "SELECT varbinary_field from test_table_1 WHERE enum_field = 'B4'",
+                new ScalarHandler<byte[]>())).isEqualTo(content);
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+    @Test
+    public void testStreamRows() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .streamRows(true)
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        SeedInfo info = seeder.infos.get(1);
+        assertThat(info.getData()).isEmpty();
+        assertThat(info.getRowSource()).isNotNull();
+        assertThat(seeder.write(info, DBWriter.class)).isEqualTo(Pair.of(2, 0));
+        assertThat(runner.query(conn, "SELECT * from test_table_1", new MapListHandler())).hasSize(2);
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+    @Test
+    public void testPipeline() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .pipelineCapacity(1)
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        SeedInfo info = seeder.infos.get(1);
+        assertThat(seeder.write(info, DBWriter.class)).isEqualTo(Pair.of(2, 0));
+        List<Map<String, Object>> result = runner.query(conn,
+                "SELECT * from test_table_1 ORDER BY enum_field", new MapListHandler());
+        assertThat(result).hasSize(2);
+        assertThat(result.get(1).get("bigint_field")).isEqualTo(123879789L);
+        assertThat(result.get(1).get("date_field")).isEqualTo(Date.valueOf("2023-05-08"));
+
+        // error of conversion is reported by writer
+        info.getData().get(1).values().set(info.getFields().get("smallint_field").index, "wrong");
+        assertThatThrownBy(() -> seeder.write(info, DBWriter.class))
+                .hasMessageContaining("smallint_field");
+        runner.execute(conn, "DELETE from test_table_1");
+    }
+
+
+    @Test
+    public void testCompiledConverters() throws Exception {
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema("PUBLIC")
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        List<SeedInfo> infos = seeder.infos.subList(1, 4);
+        ConversionWriter writer = new ConversionWriter(infos, settings);
+        Map<String, Object> outcomes = new HashMap<>();
+        for (SeedInfo info : infos) {
+            for (DataRow row : info.getData()) {
+                for (Map.Entry<String, SeedInfo.FieldInfo> entry : info.getFields().entrySet()) {
+                    RequestInfo.Field field = new RequestInfo.Field(entry.getKey(), entry.getValue().index);
+                    Object compiled = conversionOutcome(() -> writer.compiled(info, field, row));
+                    Object perRow = conversionOutcome(() -> writer.perRow(info, field, row));
+                    String name = "%s.%s[%s]".formatted(info.getTableName(), field.name(), row.sourceNumber());
+                    assertThat(compiled).as(name).isEqualTo(perRow);
+                    outcomes.put(name, compiled);
+                }
+            }
+        }
+        assertThat(outcomes).containsEntry("test_table_1.varbinary_field[4]", "00ff")
+                // references are converted by type of referenced column, multi-column references are kept
+                .containsEntry("test_table_2.test_table_1_id[4]", "TEST1")
+                .containsEntry("test_table_3.test_table_1_id[4]", "TEST1##test_1")
+                // external values
+                .containsEntry("test_table_3.big_field_2[6]", BIG_FIELD_VALUE);
+        // arrays aren't supported by HSQL driver, error is the same
+        assertThat(outcomes.get("test_table_2.test_array2[5]")).asString().startsWith("error:");
+    }
+
+    private static Object conversionOutcome(Callable<Object> conversion) {
+        try {
+            Object value = conversion.call();
+            if (value instanceof byte[] bytes) {
+                return HexFormat.of().formatHex(bytes);
+            }
+            if (value instanceof java.sql.Array array) {
+                return Arrays.asList((Object[]) array.getArray());
+            }
+            return value;
+        } catch (Exception ex) {
+            return "error: " + ex.getMessage();
+        }
+    }
+
+    /**
+     * Writer, which converts values both by compiled converters and per row, by columns looked up for every value.
+     */
+    private static class ConversionWriter extends DBWriter {
+
+        ConversionWriter(List<SeedInfo> infos, DBSSettings settings) {
+            super(infos, settings);
+        }
+
+        Object compiled(SeedInfo info, RequestInfo.Field field, DataRow data) {
+            return convertRow(info, List.of(field), data)[0];
+        }
+
+        Object perRow(SeedInfo info, RequestInfo.Field dataField, DataRow data) throws SQLException {
+            Map<String, TableInfo> tableMap = getSession().getTables();
+            String fieldName = dataField.name().toLowerCase(Locale.ROOT);
+            Object objectItem = data.values().get(dataField.pos());
+            ReferenceInfo ref = info.getReferences().get(fieldName);
+            if (ref == null) {
+                ColumnInfo field = tableMap.get(info.getTableName().toLowerCase(Locale.ROOT)).getFields()
+                        .get(fieldName);
+                return raw2object(objectItem, field, dataField);
+            }
+            if (ref.getTableColumn().size() != 1) {
+                return objectItem;
+            }
+            ColumnInfo field = tableMap.get(ref.getTableName().toLowerCase(Locale.ROOT)).getFields()
+                    .get(ref.getTableColumn().get(0).toLowerCase(Locale.ROOT));
+            return raw2object(objectItem, field, dataField);
+        }
+    }
+
 }
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 
 import dev.walgo.dbseeder.data.ActionType;
 import dev.walgo.dbseeder.data.SeedInfo;
+import dev.walgo.dbseeder.writer.StagingMergeWriter;
 import java.math.BigDecimal;
 import java.sql.Date;
 import java.sql.SQLException;
@@ -497,4 +498,111 @@ public class DBSeederTest_Postgres extends PostgreSQLTest {
 
     }
 
+    @Test
+    @Order(40)
+    public void testBulkLoad() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema(DB_SCHEMA)
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .bulkLoad(true)
+                .build();
+        DBSeeder seeder = new DBSeeder(settings);
+        seeder.read();
+        seeder.infos.remove(0);
+        seeder.infos.forEach(it -> it.setAction(ActionType.IGNORE_NOT_EMPTY));
+        seeder.write();
+
+        List<Map<String, Object>> result = runner.query(conn, "SELECT * from test_table_1 ORDER BY id",
+                new MapListHandler());
+        assertThat(result).hasSize(2);
+        Map<String, Object> row1 = result.get(0);
+        assertThat(row1.get("enum_field")).isEqualTo("TEST1");
+        assertThat(row1.get("char_field")).isEqualTo("test_ch1  ");
+        assertThat(row1.get("time_field")).isEqualTo(Time.valueOf("13:08:33"));
+        assertThat(row1.get("timestamp_field")).isEqualTo(Timestamp.valueOf("2023-05-07 13:08:33.456"));
+        assertThat(row1.get("decimal_field_2")).isEqualTo(new BigDecimal("45.33"));
+        assertThat(row1.get("boolean_field")).isEqualTo(true);
+        assertThat(row1.get("binary_field")).isEqualTo(new byte[] { 0b111111 });
+        assertThat(row1.get("varbinary_field")).isEqualTo(new byte[] { 0, -1 });
+        Map<String, Object> row2 = result.get(1);
+        assertThat(row2.get("enum_field")).isEqualTo("TEST2");
+
+        List<Map<String, Object>> result2 = runner.query(conn, "SELECT * from test_table_2 ORDER BY id",
+                new MapListHandler());
+        assertThat(result2).hasSize(2);
+        Map<String, Object> row2_2 = result2.get(1);
+        assertThat(row2_2.get("enum_field_2")).isEqualTo("TEST12");
+        Object array1 = ((PgArray) row2_2.get("test_array")).getArray();
+        assertThat(((Object[]) array1)).containsExactly(21, 22, 23);
+        Object array2 = ((PgArray) row2_2.get("test_array2")).getArray();
+        assertThat(((Object[]) array2)).containsExactly("test_char 11", BIG_FIELD_VALUE, "test char 31");
+        assertThat(row2_2.get("test_table_1_id")).isEqualTo(row2.get("id"));
+
+        List<Map<String, Object>> result3 = runner.query(conn, "SELECT * from test_table_3 ORDER BY id",
+                new MapListHandler());
+        assertThat(result3).hasSize(3);
+        Map<String, Object> row3_3 = result3.get(2);
+        assertThat(row3_3.get("enum_field_2")).isEqualTo("TEST33");
+        assertThat(row3_3.get("big_field_2")).isEqualTo(BIG_FIELD_VALUE);
+        assertThat(row3_3.get("test_table_1_id")).isEqualTo(row2.get("id"));
+        assertThat(row3_3.get("test_table_2_id")).isEqualTo(row2_2.get("id"));
+    }
+
+    @Test
+    @Order(40)
+    public void testStagingMerge() throws Exception {
+        QueryRunner runner = new QueryRunner();
+        runner.execute(conn, "DELETE from test_table_3");
+        runner.execute(conn, "DELETE from test_table_2");
+        runner.execute(conn, "DELETE from test_table_1");
+
+        DBSSettings settings = new DBSSettings.Builder()
+                .connection(conn)
+                .dbSchema(DB_SCHEMA)
+                .sourceType(SourceType.CSV)
+                .sourceDir("data")
+                .bulkLoad(true)
+                .build();
+        for (int pass = 0; pass < 2; pass++) {
+            DBSeeder seeder = new DBSeeder(settings);
+            seeder.read();
+            seeder.write(StagingMergeWriter.class);
+        }
+
+        List<Map<String, Object>> result = runner.query(conn, "SELECT * from test_table_1 ORDER BY id",
+                new MapListHandler());
+        assertThat(result).hasSize(2);
+        Map<String, Object> row1 = result.get(0);
+        assertThat(row1.get("enum_field")).isEqualTo("TEST1");
+        assertThat(row1.get("char_field")).isEqualTo("test_ch1  ");
+        assertThat(row1.get("decimal_field_2")).isEqualTo(new BigDecimal("45.33"));
+        Map<String, Object> row2 = result.get(1);
+        assertThat(row2.get("enum_field")).isEqualTo("TEST2");
+
+        List<Map<String, Object>> result2 = runner.query(conn, "SELECT * from test_table_2 ORDER BY id",
+                new MapListHandler());
+        assertThat(result2).hasSize(2);
+        Map<String, Object> row2_2 = result2.get(1);
+        assertThat(row2_2.get("enum_field_2")).isEqualTo("TEST12");
+        Object array1 = ((PgArray) row2_2.get("test_array")).getArray();
+        assertThat(((Object[]) array1)).containsExactly(21, 22, 23);
+        assertThat(row2_2.get("test_table_1_id")).isEqualTo(row2.get("id"));
+
+        List<Map<String, Object>> result3 = runner.query(conn, "SELECT * from test_table_3 ORDER BY id",
+                new MapListHandler());
+        assertThat(result3).hasSize(3);
+        Map<String, Object> row3_3 = result3.get(2);
+        assertThat(row3_3.get("enum_field_2")).isEqualTo("TEST33");
+        assertThat(row3_3.get("big_field_2")).isEqualTo(BIG_FIELD_VALUE);
+        assertThat(row3_3.get("test_table_1_id")).isEqualTo(row2.get("id"));
+        assertThat(row3_3.get("test_table_2_id")).isEqualTo(row2_2.get("id"));
+    }
+
 }
@@ -0,0 +1,36 @@
+package dev.walgo.dbseeder.db;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.sql.Timestamp;
+import java.util.TimeZone;
+import org.junit.jupiter.api.Test;
+
+public class PostgreSQLDatabaseTest {
+
+    @Test
+    public void testCopyTimestamp() {
+        TimeZone defaultZone = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Kolkata"));
+            assertThat(copyValue(Timestamp.valueOf("2023-05-07 13:08:33.456")))
+                    .isEqualTo("2023-05-07T13:08:33.456+05:30");
+
+            // offset of the timestamp date, not the current one
+            TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+            assertThat(copyValue(Timestamp.valueOf("2023-01-07 13:08:33.456")))
+                    .isEqualTo("2023-01-07T13:08:33.456-05:00");
+            assertThat(copyValue(Timestamp.valueOf("2023-07-07 13:08:33")))
+                    .isEqualTo("2023-07-07T13:08:33-04:00");
+        } finally {
+            TimeZone.setDefault(defaultZone);
+        }
+    }
+
+    private static String copyValue(Object value) {
+        StringBuilder buffer = new StringBuilder();
+        PostgreSQLDatabase.appendCopyValue(buffer, value);
+        return buffer.toString();
+    }
+
+}
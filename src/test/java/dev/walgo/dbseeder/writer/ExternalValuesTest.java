@@ -0,0 +1,132 @@
+package dev.walgo.dbseeder.writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import dev.walgo.dbseeder.DBSSettings;
+import dev.walgo.dbseeder.data.DataRow;
+import dev.walgo.dbseeder.data.SeedInfo;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.junit.jupiter.api.Test;
+
+public class ExternalValuesTest {
+
+    private static final String VALUE_A = "a".repeat(10);
+    private static final String VALUE_B = "b".repeat(10);
+    private static final String VALUE_C = "c".repeat(10);
+    // two values of 10 chars (20 bytes each) fit into cache
+    private static final long CACHE_SIZE = 50;
+
+    private final CountingLoader loader = new CountingLoader(Map.of(
+            "ext/a.txt", VALUE_A,
+            "ext/b.txt", VALUE_B,
+            "ext/c.txt", VALUE_C,
+            "ext/big.txt", "d".repeat(30)));
+
+    @Test
+    public void testCacheHits() {
+        try (ExternalValues values = new ExternalValues(settings(CACHE_SIZE))) {
+            assertThat(values.get("plain value")).isEqualTo("plain value");
+            assertThat(values.get("@@a.txt")).isEqualTo(VALUE_A);
+            assertThat(values.get("@@a.txt")).isEqualTo(VALUE_A);
+            assertThat(loader.reads("ext/a.txt")).isEqualTo(1);
+
+            // value larger than cache isn't cached
+            values.get("@@big.txt");
+            values.get("@@big.txt");
+            assertThat(loader.reads("ext/big.txt")).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testEviction() {
+        try (ExternalValues values = new ExternalValues(settings(CACHE_SIZE))) {
+            values.get("@@a.txt");
+            values.get("@@b.txt");
+            values.get("@@a.txt");
+            // least recently used value is evicted
+            assertThat(values.get("@@c.txt")).isEqualTo(VALUE_C);
+            values.get("@@a.txt");
+            assertThat(loader.reads("ext/a.txt")).isEqualTo(1);
+            assertThat(values.get("@@b.txt")).isEqualTo(VALUE_B);
+            assertThat(loader.reads("ext/b.txt")).isEqualTo(2);
+        }
+    }
+
+    @Test
+    public void testDisabled() {
+        try (ExternalValues values = new ExternalValues(settings(0))) {
+            values.get("@@a.txt");
+            values.get("@@a.txt");
+            values.prefetch(seed(List.of("@@b.txt")));
+            assertThat(loader.reads("ext/a.txt")).isEqualTo(2);
+            assertThat(loader.reads("ext/b.txt")).isZero();
+        }
+    }
+
+    @Test
+    public void testPrefetch() throws InterruptedException {
+        try (ExternalValues values = new ExternalValues(settings(CACHE_SIZE))) {
+            values.prefetch(seed("@@a.txt", List.of("@@b.txt", "plain item"), "@@a.txt"));
+            long deadline = System.currentTimeMillis() + 10_000;
+            while ((loader.reads("ext/a.txt") + loader.reads("ext/b.txt") < 2)
+                    && (System.currentTimeMillis() < deadline)) {
+                Thread.sleep(10);
+            }
+            // files of values and array items are loaded before they are requested
+            assertThat(loader.reads("ext/a.txt")).isEqualTo(1);
+            assertThat(loader.reads("ext/b.txt")).isEqualTo(1);
+            assertThat(values.get("@@a.txt")).isEqualTo(VALUE_A);
+            assertThat(values.get("@@b.txt")).isEqualTo(VALUE_B);
+            assertThat(loader.reads("ext/a.txt")).isEqualTo(1);
+            assertThat(loader.reads("ext/b.txt")).isEqualTo(1);
+            assertThat(loader.reads("ext/c.txt")).isZero();
+        }
+    }
+
+    private DBSSettings settings(long cacheSize) {
+        return new DBSSettings.Builder()
+                .dataSource(new JDBCDataSource())
+                .dbSchema("PUBLIC")
+                .sourceDir("ext")
+                .classLoader(loader)
+                .externalCacheSize(cacheSize)
+                .build();
+    }
+
+    private static SeedInfo seed(Object... values) {
+        SeedInfo info = new SeedInfo();
+        info.getData().add(new DataRow(1).addValues(values));
+        return info;
+    }
+
+    /**
+     * Loader of resources from map, which counts reading of every resource.
+     */
+    private static class CountingLoader extends ClassLoader {
+
+        private final Map<String, String> resources;
+        private final Map<String, Integer> reads = new ConcurrentHashMap<>();
+
+        CountingLoader(Map<String, String> resources) {
+            this.resources = resources;
+        }
+
+        int reads(String name) {
+            return reads.getOrDefault(name, 0);
+        }
+
+        @Override
+        public InputStream getResourceAsStream(String name) {
+            reads.merge(name, 1, Integer::sum);
+            String content = resources.get(name);
+            return content != null ? new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)) : null;
+        }
+    }
+
+}
@@ -8,6 +8,7 @@ import dev.walgo.dbseeder.SourceType;
 import dev.walgo.dbseeder.data.DataRow;
 import dev.walgo.dbseeder.data.ReferenceInfo;
 import dev.walgo.dbseeder.data.SeedInfo;
+import dev.walgo.dbseeder.db.PostgreSQLDatabase;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -122,8 +123,8 @@ public class SQLGeneratorTest_Postgres extends PostgreSQLTest {
         SQLGenerator instance = new SQLGenerator(List.of(info1, info2), settings);
         RequestInfo result = instance.insert(info2, data);
         assertThat(result).isNotNull();
-        assertThat(result.sql()).isEqualTo(
-                "INSERT INTO test_2 (key_id, test_1_1, test_2_2, test_3_3) VALUES ((SELECT key_id FROM test WHERE test_2 = ?), ?, ?, ?)");
+        assertThat(result.sql()).isEqualTo("INSERT INTO test_2 (key_id, test_1_1, test_2_2, test_3_3) "
+                + "VALUES ((SELECT key_id FROM test WHERE test_2 = ?), ?, ?, ?)");
         assertThat(result.data()).containsExactlyElementsOf(data.values());
         List<String> testFields = result.fields().stream().map(it -> it.name()).toList();
         assertThat(testFields).containsExactlyElementsOf(info2.getFields().keySet());
@@ -169,8 +170,8 @@ public class SQLGeneratorTest_Postgres extends PostgreSQLTest {
         SQLGenerator instance = new SQLGenerator(List.of(info1, info2), settings);
         RequestInfo result = instance.update(info2, data);
         assertThat(result).isNotNull();
-        assertThat(result.sql()).isEqualTo(
-                "UPDATE test_2 SET key_id = (SELECT key_id FROM test WHERE test_2 = ?), test_1_1 = ?, test_3_3 = ? WHERE test_2_2 = ?");
+        assertThat(result.sql()).isEqualTo("UPDATE test_2 SET key_id = (SELECT key_id FROM test WHERE test_2 = ?), "
+                + "test_1_1 = ?, test_3_3 = ? WHERE test_2_2 = ?");
         assertThat(result.data()).containsExactlyElementsOf(List.of("0", "1", "3", "2"));
         List<String> testFields = result.fields().stream().map(it -> it.name()).toList();
         assertThat(testFields).containsExactlyElementsOf(List.of("key_id", "test_1_1", "test_3_3", "test_2_2"));
@@ -211,6 +212,110 @@ public class SQLGeneratorTest_Postgres extends PostgreSQLTest {
         assertThat(testFields).containsExactlyElementsOf(List.of("test_2"));
     }
 
+    @Test
+    public void testSelectKeys() {
+        SeedInfo info = makeInfo1();
+        info.setExtraCondition("is_deleted = 0");
+        SQLGenerator instance = new SQLGenerator(List.of(info), settings);
+        String result = instance.selectKeys(info);
+        assertThat(result).isEqualTo("SELECT t.test_2 FROM test t WHERE is_deleted = 0");
+    }
+
+    @Test
+    public void testSelectKeysWithReference() {
+        SeedInfo info1 = makeInfo1();
+        SeedInfo info2 = makeInfo2_MultiRef();
+        info2.getKeys().put("key_id", 0);
+        SQLGenerator instance = new SQLGenerator(List.of(info1, info2), settings);
+        String result = instance.selectKeys(info2);
+        assertThat(result).isEqualTo("SELECT (SELECT test_2 || '##' || test_2_sub FROM test WHERE key_id = t.key_id), "
+                + "t.test_2_2 FROM test_2 t");
+    }
+
+    @Test
+    public void testSelectRows() {
+        SeedInfo info1 = makeInfo1();
+        SeedInfo info2 = makeInfo2_MultiRef();
+        SQLGenerator instance = new SQLGenerator(List.of(info1, info2), settings);
+        String result = instance.selectRows(info2);
+        assertThat(result).isEqualTo("SELECT t.test_2_2, "
+                + "(SELECT test_2 || '##' || test_2_sub FROM test WHERE key_id = t.key_id), t.test_1_1, t.test_3_3 "
+                + "FROM test_2 t");
+    }
+
+    @Test
+    public void testUpdateChangedFields() {
+        SeedInfo info = makeInfo1();
+        DataRow data = makeTestData("1", "2", "3");
+        SQLGenerator instance = new SQLGenerator(List.of(info), settings);
+        RequestInfo result = instance.update(info, data, List.of("test_3"));
+        assertThat(result).isNotNull();
+        assertThat(result.sql()).isEqualTo("UPDATE test SET test_3 = ? WHERE test_2 = ?");
+        assertThat(result.data()).containsExactlyElementsOf(List.of("3", "2"));
+        assertThat(instance.update(info, data, List.of())).isNull();
+    }
+
+    /**
+     * reference cache
+     */
+
+    @Test
+    public void testSelectReference() {
+        SeedInfo info1 = makeInfo1();
+        SeedInfo info2 = makeInfo2_MultiRef();
+        SQLGenerator instance = new SQLGenerator(List.of(info1, info2), settings);
+        String result = instance.selectReference(info2.getReferences().get("key_id"));
+        assertThat(result).isEqualTo("SELECT key_id, test_2 || '##' || test_2_sub FROM test");
+    }
+
+    @Test
+    public void testInsertWithCachedReference() {
+        SeedInfo info1 = makeInfo1();
+        SeedInfo info2 = makeInfo2();
+        DataRow data = makeTestData("0", "1", "2", "3");
+        DBSSettings cacheSettings = new DBSSettings.Builder().from(settings).referenceCache(true).build();
+        SQLGenerator instance = new SQLGenerator(List.of(info1, info2), cacheSettings);
+        RequestInfo result = instance.insert(info2, data);
+        assertThat(result.sql()).isEqualTo(
+                "INSERT INTO test_2 (key_id, test_1_1, test_2_2, test_3_3) VALUES (?, ?, ?, ?)");
+        assertThat(result.data()).containsExactlyElementsOf(data.values());
+    }
+
+    /**
+     * upsert
+     */
+
+    @Test
+    public void testUpsert() {
+        SeedInfo info = makeInfo1();
+        DataRow data = makeTestData("1", "2", "3");
+        SQLGenerator instance = new SQLGenerator(List.of(info), settings);
+        RequestInfo result = instance.upsert(info, data, new PostgreSQLDatabase());
+        assertThat(result.sql()).isEqualTo("INSERT INTO test (test_1, test_2, test_3) VALUES (?, ?, ?) "
+                + "ON CONFLICT (test_2) DO UPDATE SET test_1 = EXCLUDED.test_1, test_3 = EXCLUDED.test_3");
+        assertThat(result.data()).containsExactlyElementsOf(List.of("1", "2", "3"));
+        List<String> testFields = result.fields().stream().map(it -> it.name()).toList();
+        assertThat(testFields).containsExactlyElementsOf(List.of("test_1", "test_2", "test_3"));
+    }
+
+    /**
+     * statement plan
+     */
+
+    @Test
+    public void testPlanSameAsGenerator() {
+        SeedInfo info1 = makeInfo1();
+        SeedInfo info2 = makeInfo2();
+        SQLGenerator instance = new SQLGenerator(List.of(info1, info2), settings);
+        StatementPlan plan = new StatementPlan(instance, info2);
+        for (DataRow data : List.of(makeTestData("0", "1", "2", "3"), makeTestData("4", null, "6", "7"),
+                makeTestData("0", "!!-1", "2", "3"))) {
+            assertThat(plan.insert(data)).isEqualTo(instance.insert(info2, data));
+            assertThat(plan.update(data)).isEqualTo(instance.update(info2, data));
+            assertThat(plan.checkRecord(data)).isEqualTo(instance.checkRecord(info2, data));
+        }
+    }
+
     /**
      * value2replacement
      */
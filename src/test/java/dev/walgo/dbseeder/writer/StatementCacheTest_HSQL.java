@@ -0,0 +1,152 @@
+package dev.walgo.dbseeder.writer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class StatementCacheTest_HSQL {
+
+    private static final String DB_USER = "sa";
+    private static final String DB_URL = "jdbc:hsqldb:mem:cachedb";
+    private static final String INSERT = "INSERT INTO cache_test (name) VALUES (?)";
+    private static final String COUNT = "SELECT COUNT(*) FROM cache_test WHERE name = ?";
+    private static final String MAX = "SELECT MAX(id) FROM cache_test WHERE name = ?";
+
+    private static Connection conn;
+
+    /** Statements prepared via connection, in order of preparing. */
+    private final List<PreparedStatement> prepared = new ArrayList<>();
+    private Connection countingConn;
+
+    @BeforeAll
+    public static void before() throws SQLException {
+        conn = DriverManager.getConnection(DB_URL, DB_USER, "");
+        new QueryRunner().execute(conn,
+                "CREATE TABLE cache_test (id INT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, name VARCHAR(50))");
+    }
+
+    @AfterAll
+    public static void after() throws SQLException {
+        conn.close();
+    }
+
+    @BeforeEach
+    public void init() {
+        countingConn = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {Connection.class}, (proxy, method, args) -> {
+                    try {
+                        Object result = method.invoke(conn, args);
+                        if (method.getName().equals("prepareStatement")) {
+                            prepared.add((PreparedStatement) result);
+                        }
+                        return result;
+                    } catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                });
+    }
+
+    @Test
+    public void testReuse() throws SQLException {
+        try (StatementCache cache = new StatementCache(countingConn, 10)) {
+            cache.update(INSERT, "reuse");
+            cache.update(INSERT, "reuse");
+            assertThat(cache.query(COUNT, new ScalarHandler<Number>(), "reuse").intValue()).isEqualTo(2);
+            assertThat(cache.query(COUNT, new ScalarHandler<Number>(), "reuse").intValue()).isEqualTo(2);
+            assertThat(prepared).hasSize(2);
+            assertThat(prepared).noneMatch(this::isClosed);
+        }
+        assertThat(prepared).allMatch(this::isClosed);
+    }
+
+    @Test
+    public void testReturnKeys() throws SQLException {
+        try (StatementCache cache = new StatementCache(countingConn, 10)) {
+            cache.update(INSERT, "keys");
+            // the same SQL with generated keys isn't taken from statement without them
+            Number id = cache.insert(INSERT, new ScalarHandler<>(), "keys");
+            assertThat(id).isNotNull();
+            assertThat(id.intValue()).isEqualTo(cache.query(MAX, new ScalarHandler<Number>(), "keys").intValue());
+            assertThat(cache.insert(INSERT, new ScalarHandler<Number>(), "keys").intValue())
+                    .isEqualTo(id.intValue() + 1);
+            cache.update(INSERT, "keys");
+            assertThat(prepared).hasSize(3);
+        }
+    }
+
+    @Test
+    public void testEviction() throws SQLException {
+        try (StatementCache cache = new StatementCache(countingConn, 2)) {
+            cache.update(INSERT, "lru");
+            cache.query(COUNT, new ScalarHandler<>(), "lru");
+            cache.update(INSERT, "lru");
+            // least recently used statement is closed
+            cache.query(MAX, new ScalarHandler<>(), "lru");
+            assertThat(prepared).hasSize(3);
+            assertThat(isClosed(prepared.get(0))).isFalse();
+            assertThat(isClosed(prepared.get(1))).isTrue();
+            assertThat(isClosed(prepared.get(2))).isFalse();
+
+            assertThat(cache.query(COUNT, new ScalarHandler<Number>(), "lru").intValue()).isEqualTo(2);
+            assertThat(prepared).hasSize(4);
+            assertThat(isClosed(prepared.get(0))).isTrue();
+        }
+    }
+
+    @Test
+    public void testDisabled() throws SQLException {
+        try (StatementCache cache = new StatementCache(countingConn, 0)) {
+            cache.update(INSERT, "disabled");
+            cache.batch(INSERT, new Object[][] {{"disabled"}, {"disabled"}});
+            assertThat(cache.query(COUNT, new ScalarHandler<Number>(), "disabled").intValue()).isEqualTo(3);
+            // every statement is closed after execution
+            assertThat(prepared).hasSize(3);
+            assertThat(prepared).allMatch(this::isClosed);
+        }
+    }
+
+    @Test
+    public void testStreamedBatch(@TempDir Path dir) throws IOException, SQLException {
+        Path file = dir.resolve("value.txt");
+        Files.writeString(file, "streamed");
+        ExternalStream value = new ExternalStream(file.toString(), true, false, getClass().getClassLoader());
+        try (StatementCache cache = new StatementCache(countingConn, 10)) {
+            StatementBatch batch = new StatementBatch(cache, 1000);
+            for (int i = 0; i <= StatementBatch.MAX_STREAMS; i++) {
+                batch.addInsert(INSERT, new Object[] {value}, List.of(i), i + 1);
+            }
+            // batch is executed by number of open streams before its size is reached
+            assertThat(batch.inserted()).isEqualTo(StatementBatch.MAX_STREAMS);
+            batch.flush();
+            assertThat(batch.inserted()).isEqualTo(StatementBatch.MAX_STREAMS + 1);
+            assertThat(cache.query(COUNT, new ScalarHandler<Number>(), "streamed").intValue())
+                    .isEqualTo(StatementBatch.MAX_STREAMS + 1);
+        }
+    }
+
+    private boolean isClosed(PreparedStatement stmt) {
+        try {
+            return stmt.isClosed();
+        } catch (SQLException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+}
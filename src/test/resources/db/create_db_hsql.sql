@@ -18,7 +18,8 @@ CREATE TABLE test_table_1 (
   real_field REAL,
   binary_field BINARY(2),
   varbinary_field VARBINARY(50),
-  other_field OTHER
+  other_field OTHER,
+  blob_field BLOB
 );
 
 CREATE TABLE test_table_2 (